@@ -45,6 +45,7 @@ import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Builder;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.io.IOException;
 import java.io.ObjectStreamException;
@@ -60,6 +61,11 @@ public class DeployBuilder extends Builder {
 
     private final List<? extends DeployHost<?, ?>> hosts;
 
+    /**
+     * The maximum number of hosts to deploy concurrently.
+     */
+    private int hostConcurrency = 1;
+
     @DataBoundConstructor
     public DeployBuilder(List<? extends DeployHost<?, ?>> hosts) {
         this.hosts = new ArrayList<DeployHost<?, ?>>(hosts == null ? Collections.<DeployHost<?, ?>>emptySet() : hosts);
@@ -69,6 +75,15 @@ public class DeployBuilder extends Builder {
         return hosts;
     }
 
+    public int getHostConcurrency() {
+        return Math.max(1, hostConcurrency);
+    }
+
+    @DataBoundSetter
+    public void setHostConcurrency(int hostConcurrency) {
+        this.hostConcurrency = Math.max(1, hostConcurrency);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -81,26 +96,31 @@ public class DeployBuilder extends Builder {
      * {@inheritDoc}
      */
     @Override
-    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+    public boolean perform(final AbstractBuild<?, ?> build, final Launcher launcher, BuildListener listener)
             throws InterruptedException, IOException {
         try {
-            for (DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set : hosts) {
-                if (!Engine.create(set)
-                        .withCredentials(build.getProject(), ACL.SYSTEM)
-                        .from(build, DeploySourceOrigin.WORKSPACE)
-                        .withLauncher(launcher)
-                        .withListener(listener)
-                        .build()
-                        .perform()) {
-                    return false;
+            return new HostDeployer(getHostConcurrency()) {
+                @Override
+                protected boolean deploy(DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set,
+                                         BuildListener listener) throws Throwable {
+                    return Engine.create(set)
+                            .withCredentials(build.getProject(), ACL.SYSTEM)
+                            .from(build, DeploySourceOrigin.WORKSPACE)
+                            .withTargetConcurrency(set.getTargetConcurrency())
+                            .withLauncher(launcher)
+                            .withListener(listener)
+                            .build()
+                            .perform();
                 }
-            }
+            }.perform(hosts, listener);
+        } catch (InterruptedException e) {
+            // aborted - > abort the build
+            throw e;
         } catch (Throwable t) {
             // deployment failed - > fail the build
             t.printStackTrace(listener.getLogger());
             return false;
         }
-        return true;
     }
 
     /**
@@ -40,6 +40,8 @@ public class DeployEvent {
     private final AbstractBuild<?, ?> build;
     @NonNull
     private final List<Cause> causes;
+    @NonNull
+    private final DeployMetrics metrics = new DeployMetrics();
 
     public DeployEvent(@NonNull AbstractBuild<?, ?> build, @NonNull List<Cause> causes) {
         build.getClass();
@@ -58,6 +60,16 @@ public class DeployEvent {
         return causes;
     }
 
+    /**
+     * Returns the measurements of the deployment, which are filled in as the deployment progresses.
+     *
+     * @return the measurements of the deployment.
+     */
+    @NonNull
+    public DeployMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
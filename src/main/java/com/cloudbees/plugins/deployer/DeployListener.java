@@ -93,6 +93,18 @@ public class DeployListener implements ExtensionPoint {
         onFailure(event);
     }
 
+    /**
+     * Called for each deployment that was skipped because the artifact was already deployed to the target.
+     *
+     * @param host   the host that the deployment was for (or {@code null} if the information is not available).
+     * @param target the target of the deployment (or {@code null} if the information is not available).
+     * @param event  the skipped deployment details.
+     */
+    public <S extends DeployHost<S, T>, T extends DeployTarget<T>> void onSkipped(@CheckForNull DeployHost<S, T> host,
+                                                                                  @CheckForNull DeployTarget<T> target,
+                                                                                  @NonNull DeployEvent event) {
+    }
+
     /**
      * Notifies all the listeners of a successful deployment.
      *
@@ -164,4 +176,27 @@ public class DeployListener implements ExtensionPoint {
             }
         }
     }
+
+    /**
+     * Notifies all the listeners of a skipped deployment.
+     *
+     * @param host   the host that the deployment was for (or {@code null} if the information is not available).
+     * @param target the target of the deployment (or {@code null} if the information is not available).
+     * @param event  the deployment details.
+     */
+    public static <S extends DeployHost<S, T>, T extends DeployTarget<T>> void notifySkipped(
+            @CheckForNull DeployHost<S, T> host,
+            @CheckForNull DeployTarget<T> target,
+            @NonNull DeployEvent event) {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins != null) {
+            for (DeployListener listener : jenkins.getExtensionList(DeployListener.class)) {
+                try {
+                    listener.onSkipped(host, target, event);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.WARNING, "Uncaught exception from " + listener.getClass(), t);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,193 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measurements of a single deployment, recorded by the {@link com.cloudbees.plugins.deployer.engines.Engine} as the
+ * deployment progresses. Times are measured with {@link System#nanoTime()}.
+ */
+public class DeployMetrics {
+
+    /**
+     * The phases of a deployment.
+     */
+    public enum Phase {
+        /**
+         * Resolving the application file from the deploy source.
+         */
+        RESOLVE("resolve"),
+        /**
+         * Validating the application file.
+         */
+        VALIDATE("validate"),
+        /**
+         * Creating the deploy actor and transferring the application file.
+         */
+        TRANSFER("transfer"),
+        /**
+         * Computing the digest of the application file, when not done as part of the transfer.
+         */
+        DIGEST("digest"),
+        /**
+         * Recording the deployment in the fingerprint records.
+         */
+        RECORD_FACETS("facets"),
+        /**
+         * Recording the deployment against the build.
+         */
+        RECORD_ACTION("action");
+
+        @NonNull
+        private final String label;
+
+        Phase(@NonNull String label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the short label used in summaries.
+         *
+         * @return the short label used in summaries.
+         */
+        @NonNull
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * The nanoseconds spent in each phase, indexed by ordinal.
+     */
+    private final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+
+    /**
+     * The number of attempts made to transfer the application file.
+     */
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    /**
+     * Adds time spent in a phase.
+     *
+     * @param phase the phase.
+     * @param nanos the nanoseconds spent.
+     */
+    public void record(@NonNull Phase phase, long nanos) {
+        this.nanos.addAndGet(phase.ordinal(), Math.max(0L, nanos));
+    }
+
+    /**
+     * Adds the time elapsed since the start of a phase.
+     *
+     * @param phase      the phase.
+     * @param startNanos the {@link System#nanoTime()} when the phase started.
+     */
+    public void recordSince(@NonNull Phase phase, long startNanos) {
+        record(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records an attempt to transfer the application file.
+     *
+     * @return the number of the attempt, starting from {@code 1}.
+     */
+    public int recordAttempt() {
+        return attempts.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of attempts made to transfer the application file.
+     *
+     * @return the number of attempts made to transfer the application file.
+     */
+    public int getAttempts() {
+        return attempts.get();
+    }
+
+    /**
+     * Returns the nanoseconds spent in a phase.
+     *
+     * @param phase the phase.
+     * @return the nanoseconds spent in the phase.
+     */
+    public long getNanos(@NonNull Phase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    /**
+     * Returns the milliseconds spent in a phase.
+     *
+     * @param phase the phase.
+     * @return the milliseconds spent in the phase.
+     */
+    public long getMillis(@NonNull Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(getNanos(phase));
+    }
+
+    /**
+     * Returns the total nanoseconds spent in all phases.
+     *
+     * @return the total nanoseconds spent in all phases.
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (int i = 0; i < nanos.length(); i++) {
+            total += nanos.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns a compact single line summary of the metrics.
+     *
+     * @return a compact single line summary of the metrics.
+     */
+    @NonNull
+    public String toSummary() {
+        StringBuilder buf = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            buf.append(phase.getLabel()).append('=').append(getMillis(phase)).append("ms ");
+        }
+        buf.append("total=").append(TimeUnit.NANOSECONDS.toMillis(getTotalNanos())).append("ms");
+        if (getAttempts() > 1) {
+            buf.append(" attempts=").append(getAttempts());
+        }
+        return buf.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "DeployMetrics{" + toSummary() + '}';
+    }
+}
@@ -24,6 +24,7 @@
 
 package com.cloudbees.plugins.deployer;
 
+import hudson.Extension;
 import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.Executor;
@@ -31,10 +32,12 @@ import hudson.model.Hudson;
 import hudson.model.Node;
 import hudson.model.Queue;
 import hudson.model.Slave;
+import hudson.model.queue.QueueListener;
 import hudson.slaves.RetentionStrategy;
 import hudson.slaves.SlaveComputer;
 import hudson.util.Futures;
 import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.HttpResponses;
 import org.kohsuke.stapler.StaplerRequest;
@@ -46,6 +49,8 @@ import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.LogRecord;
 
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
@@ -125,16 +130,12 @@ public class DeployNowComputer extends SlaveComputer {
     }
 
     private void checkLater() {
-        Computer.threadPoolForRemoting.submit(new Runnable() {
+        // give the executor a moment to become idle
+        Timer.get().schedule(new Runnable() {
             public void run() {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    // ignore
-                }
                 RETENTION_STRATEGY.check(DeployNowComputer.this);
             }
-        });
+        }, 100, TimeUnit.MILLISECONDS);
     }
 
     public static class DeployNowRetentionStrategy extends RetentionStrategy<DeployNowComputer> {
@@ -143,14 +144,16 @@ public class DeployNowComputer extends SlaveComputer {
             if (!c.isIdle()) {
                 return 1;
             }
-            final Jenkins jenkins = Jenkins.getInstance();
-            if (jenkins != null) {
-                for (Queue.Item t : jenkins.getQueue().getItems()) {
-                    if (t.task instanceof DeployNowTask) {
-                        return 1;
-                    }
-                }
+            long idleMillis = TimeUnit.MINUTES.toMillis(DeployNowConfiguration.get().getIdleMinutes());
+            if (System.currentTimeMillis() - c.getIdleStartMilliseconds() < idleMillis) {
+                // keep the node warm for the next burst of deployments
+                return 1;
+            }
+            // a missed queue event would keep the node forever, so confirm against the queue before keeping it
+            if (PendingTasks.count() > 0 && PendingTasks.recount() > 0) {
+                return 1;
             }
+            final Jenkins jenkins = Jenkins.getInstance();
             if (!c.offline) {
                 c.offline = true;
                 try {
@@ -178,7 +181,7 @@ public class DeployNowComputer extends SlaveComputer {
                     }
                     if (Hudson.getInstance().getNodes().contains(deployNowSlave)) {
                         // need final check as remove thread may have trampled us while we were searching initially
-                        return deployNowSlave;
+                        return reconfigure(deployNowSlave);
                     }
                 }
             }
@@ -193,6 +196,96 @@ public class DeployNowComputer extends SlaveComputer {
             }
 
         }
+
+        /**
+         * Applies the executor count of the {@link DeployNowConfiguration} to the {@link DeployNowSlave}, if present.
+         */
+        public synchronized void reconfigure() {
+            for (Node n : Hudson.getInstance().getNodes()) {
+                if (n instanceof DeployNowSlave) {
+                    reconfigure((DeployNowSlave) n);
+                }
+            }
+        }
+
+        /**
+         * Replaces the node with one that has the configured number of executors.
+         *
+         * @param node the registered node.
+         * @return the node that is registered once done.
+         */
+        private DeployNowSlave reconfigure(DeployNowSlave node) {
+            if (node.getNumExecutors() == DeployNowConfiguration.get().getExecutors()) {
+                return node;
+            }
+            try {
+                // adding a node with the same name replaces the registered one but keeps its computer, which adds or
+                // retires executors as they become idle
+                DeployNowSlave n = new DeployNowSlave();
+                Hudson.getInstance().addNode(n);
+                Node registered = Hudson.getInstance().getNode(n.getNodeName());
+                return registered instanceof DeployNowSlave ? (DeployNowSlave) registered : node;
+            } catch (IOException e) {
+                return node;
+            } catch (Descriptor.FormException e) {
+                return node;
+            }
+        }
     }
 
+    /**
+     * Counts the {@link DeployNowTask}s in the queue so that the retention strategy does not have to scan the queue.
+     */
+    @Extension
+    public static class PendingTasks extends QueueListener {
+
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
+        /**
+         * Returns the number of {@link DeployNowTask}s in the queue.
+         *
+         * @return the number of {@link DeployNowTask}s in the queue.
+         */
+        public static int count() {
+            return COUNT.get();
+        }
+
+        /**
+         * Counts the {@link DeployNowTask}s in the queue again, correcting the number kept by the listener.
+         *
+         * @return the number of {@link DeployNowTask}s in the queue.
+         */
+        public static int recount() {
+            Queue.withLock(new Runnable() {
+                public void run() {
+                    int count = 0;
+                    for (Queue.Item item : Queue.getInstance().getItems()) {
+                        if (item.task instanceof DeployNowTask) {
+                            count++;
+                        }
+                    }
+                    // the listener is called with the queue lock held, so no event can be missed while counting
+                    COUNT.set(count);
+                }
+            });
+            return COUNT.get();
+        }
+
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            if (wi.task instanceof DeployNowTask) {
+                COUNT.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            if (li.task instanceof DeployNowTask) {
+                int count;
+                do {
+                    count = COUNT.get();
+                } while (count > 0 && !COUNT.compareAndSet(count, count - 1));
+            }
+        }
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.util.FormValidation;
+import jenkins.model.GlobalConfiguration;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+
+/**
+ * Global settings of the {@link DeployNowSlave}.
+ */
+@Extension
+public class DeployNowConfiguration extends GlobalConfiguration {
+
+    /**
+     * The number of {@link DeployNowTask}s that can run at the same time.
+     */
+    private int executors = 1;
+
+    /**
+     * Whether a new Deploy Now request replaces a pending request for the same job and hosts.
+     */
+    private boolean coalesce;
+
+    /**
+     * The minutes an idle {@link DeployNowSlave} is kept before it is removed.
+     */
+    private int idleMinutes;
+
+    public DeployNowConfiguration() {
+        load();
+    }
+
+    /**
+     * Returns the singleton instance.
+     *
+     * @return the singleton instance.
+     */
+    @NonNull
+    public static DeployNowConfiguration get() {
+        DeployNowConfiguration configuration = GlobalConfiguration.all().get(DeployNowConfiguration.class);
+        if (configuration == null) {
+            throw new IllegalStateException("Jenkins has shut down or not yet started.");
+        }
+        return configuration;
+    }
+
+    /**
+     * Returns the number of executors of the {@link DeployNowSlave}.
+     *
+     * @return the number of executors of the {@link DeployNowSlave}, at least one.
+     */
+    public int getExecutors() {
+        return Math.max(1, executors);
+    }
+
+    @DataBoundSetter
+    public void setExecutors(int executors) {
+        this.executors = Math.max(1, executors);
+    }
+
+    /**
+     * Returns {@code true} if a new Deploy Now request replaces any request for the same job and hosts that is still
+     * waiting in the queue, rather than queueing behind it.
+     *
+     * @return {@code true} if the latest Deploy Now request wins.
+     */
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    @DataBoundSetter
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    /**
+     * Returns the minutes that the {@link DeployNowSlave} is kept once idle, so that bursts of deployments do not
+     * pay for removing and adding back the node between each deployment.
+     *
+     * @return the minutes that the idle node is kept, {@code 0} to remove it as soon as it is idle.
+     */
+    public int getIdleMinutes() {
+        return Math.max(0, idleMinutes);
+    }
+
+    @DataBoundSetter
+    public void setIdleMinutes(int idleMinutes) {
+        this.idleMinutes = Math.max(0, idleMinutes);
+    }
+
+    public FormValidation doCheckIdleMinutes(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+        req.bindJSON(this, json);
+        save();
+        DeployNowComputer.RETENTION_STRATEGY.reconfigure();
+        return true;
+    }
+
+    public FormValidation doCheckExecutors(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public String getDisplayName() {
+        return Messages.DeployNowConfiguration_DisplayName();
+    }
+}
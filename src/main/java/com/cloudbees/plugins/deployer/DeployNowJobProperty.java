@@ -39,6 +39,7 @@ import hudson.util.ExceptionCatchingThreadFactory;
 import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 
@@ -63,6 +64,11 @@ public class DeployNowJobProperty extends JobProperty<AbstractProject<?, ?>> {
 
     private List<? extends DeployHost<?, ?>> hosts;
 
+    /**
+     * The maximum number of hosts to deploy concurrently.
+     */
+    private int hostConcurrency = 1;
+
     @DataBoundConstructor
     public DeployNowJobProperty(boolean oneClickDeploy, List<? extends DeployHost<?, ?>> hosts) {
         this.hosts = new ArrayList<DeployHost<?, ?>>(hosts == null ? Collections.<DeployHost<?, ?>>emptySet() : hosts);
@@ -94,6 +100,15 @@ public class DeployNowJobProperty extends JobProperty<AbstractProject<?, ?>> {
         this.hosts = hosts;
     }
 
+    public int getHostConcurrency() {
+        return Math.max(1, hostConcurrency);
+    }
+
+    @DataBoundSetter
+    public void setHostConcurrency(int hostConcurrency) {
+        this.hostConcurrency = Math.max(1, hostConcurrency);
+    }
+
     @Override
     public Collection<? extends Action> getJobActions(AbstractProject<?, ?> job) {
         return Arrays.asList(new DeployNowProjectAction(job));
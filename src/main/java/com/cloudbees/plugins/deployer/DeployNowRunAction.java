@@ -37,6 +37,7 @@ import hudson.Util;
 import hudson.console.AnnotatedLargeText;
 import hudson.console.ConsoleLogFilter;
 import hudson.console.ConsoleNote;
+import hudson.console.ModelHyperlinkNote;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
@@ -58,6 +59,7 @@ import hudson.security.Permission;
 import hudson.security.PermissionGroup;
 import hudson.security.PermissionScope;
 import hudson.tasks.BuildWrapper;
+import hudson.util.StreamTaskListener;
 import hudson.util.FlushProofOutputStream;
 import hudson.util.HttpResponses;
 import jenkins.model.Jenkins;
@@ -194,6 +196,16 @@ public class DeployNowRunAction implements RunAction {
         return false;
     }
 
+    public int getHostConcurrency() {
+        if (owner != null) {
+            DeployNowJobProperty property = owner.getParent().getProperty(DeployNowJobProperty.class);
+            if (property != null) {
+                return property.getHostConcurrency();
+            }
+        }
+        return 1;
+    }
+
     public boolean isSaveConfigForced() {
         if (owner != null) {
             DeployNowJobProperty property = owner.getParent().getProperty(DeployNowJobProperty.class);
@@ -218,17 +230,20 @@ public class DeployNowRunAction implements RunAction {
             final List<DeployHost<?, ?>> sets = (List) req.bindJSONToList(DeployHost.class, json.get("hosts"));
             boolean saveConfig = json.optBoolean("saveConfig");
             boolean oneClickDeploy = json.optBoolean("oneClickDeploy");
+            int hostConcurrency = json.optInt("hostConcurrency", 1);
             if (owner.getParent().hasPermission(CONFIGURE) && (oneClickDeploy || saveConfig)) {
                 AbstractProject<?, ?> parent = (AbstractProject<?, ?>) owner.getParent();
                 DeployNowJobProperty property = parent.getProperty(DeployNowJobProperty.class);
                 try {
                     if (property == null) {
                         property = new DeployNowJobProperty(oneClickDeploy, sets);
+                        property.setHostConcurrency(hostConcurrency);
                         parent.addProperty(property);
                     } else {
                         property.setOneClickDeploy(oneClickDeploy);
                         if (saveConfig) {
                             property.setHosts(sets);
+                            property.setHostConcurrency(hostConcurrency);
                         }
                         parent.save();
                     }
@@ -241,6 +256,9 @@ public class DeployNowRunAction implements RunAction {
                     && !(owner.getParent().hasPermission(JOB_AUTH) && DeployHost.isValid(sets, owner, ACL.SYSTEM))) {
                 return HttpResponses.forwardToPreviousPage();
             }
+            if (DeployNowConfiguration.get().isCoalesce()) {
+                supersedePending(sets);
+            }
             if (deployer == null) {
                 getLogFile().delete();
                 try {
@@ -253,11 +271,60 @@ public class DeployNowRunAction implements RunAction {
             Hudson.getInstance().getQueue().schedule(
                     new DeployNowTask((AbstractBuild) owner, new Deployer(sets,
                             Arrays.<Cause>asList(new Cause.UserCause(), new DeployNowCause()),
-                            Jenkins.getAuthentication())), 0);
+                            Jenkins.getAuthentication(), hostConcurrency)), 0);
         }
         return HttpResponses.forwardToView(this, "_deploy");
     }
 
+    /**
+     * Cancels the Deploy Now tasks of the same job to the same hosts that are still waiting in the queue, as the
+     * request being submitted replaces them. The log of each superseded request links to this build.
+     *
+     * @param sets the hosts of the request being submitted.
+     */
+    void supersedePending(List<DeployHost<?, ?>> sets) {
+        Queue queue = Hudson.getInstance().getQueue();
+        for (Queue.Item item : queue.getItems()) {
+            if (!(item.task instanceof DeployNowTask)) {
+                continue;
+            }
+            DeployNowTask task = (DeployNowTask) item.task;
+            if (!owner.getParent().equals(task.getBuild().getParent())
+                    || !sets.equals(task.getDeployer().getSets())
+                    || !queue.cancel(item)) {
+                continue;
+            }
+            if (owner.equals(task.getBuild())) {
+                // the log will be restarted by the request being submitted
+                continue;
+            }
+            DeployNowRunAction action = task.getBuild().getAction(DeployNowRunAction.class);
+            if (action != null && !action.isDeploying()) {
+                action.logSuperseded(owner);
+            }
+        }
+    }
+
+    /**
+     * Records in the log of a cancelled request the build whose request replaced it.
+     *
+     * @param replacement the build whose request replaced the cancelled request.
+     */
+    private void logSuperseded(Run<?, ?> replacement) {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(getLogFile(), true);
+            StreamTaskListener listener = new StreamTaskListener(out, getCharset());
+            listener.getLogger().println(Messages.DeployNowRunAction_Superseded(ModelHyperlinkNote.encodeTo(
+                    "/" + replacement.getUrl() + getUrlName() + "/deploy", replacement.getFullDisplayName())));
+            listener.getLogger().flush();
+        } catch (IOException e) {
+            // ignore
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
     /**
      * Hack to help determine if {@link org.kohsuke.stapler.StaplerRequest#getSubmittedForm()} will bomb out
      *
@@ -320,6 +387,13 @@ public class DeployNowRunAction implements RunAction {
         return owner;
     }
 
+    /**
+     * Returns true if a deployment of the build is in progress.
+     */
+    public boolean isDeploying() {
+        return deployer != null;
+    }
+
     public boolean isHasOutput() {
         return deployer != null || getLogFile().isFile();
     }
@@ -463,15 +537,17 @@ public class DeployNowRunAction implements RunAction {
 
     @SuppressFBWarnings(value = "RV_RETURN_VALUE_IGNORED_BAD_PRACTICE", justification = "Value returned by delete() is not needed")
     protected final void run(Deployer deployer) {
-        if (this.deployer != null) {
-            return;     // already deploying.
+        synchronized (this) {
+            if (this.deployer != null) {
+                return;     // already deploying.
+            }
+            this.deployer = deployer;
         }
 
         getLogFile().delete();
 
         StreamBuildListener listener = null;
 
-        this.deployer = deployer;
         Result result = Result.SUCCESS;
         try {
             // to set the state to COMPLETE in the end, even if the thread dies abnormally.
@@ -585,13 +661,21 @@ public class DeployNowRunAction implements RunAction {
 
         private final Authentication authentication;
 
+        private final int hostConcurrency;
+
         public Deployer(List<DeployHost<?, ?>> sets, List<Cause> causes, Authentication authentication) {
+            this(sets, causes, authentication, 1);
+        }
+
+        public Deployer(List<DeployHost<?, ?>> sets, List<Cause> causes, Authentication authentication,
+                        int hostConcurrency) {
             this.sets = sets;
             this.causes = causes;
             this.authentication = authentication;
+            this.hostConcurrency = Math.max(1, hostConcurrency);
         }
 
-        public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+        public boolean perform(final AbstractBuild<?, ?> build, final Launcher launcher, BuildListener listener)
                 throws InterruptedException, IOException {
             ACL acl = build.getProject().getACL();
             List<Authentication> deployAuthentications = new ArrayList<Authentication>();
@@ -602,23 +686,32 @@ public class DeployNowRunAction implements RunAction {
                 deployAuthentications.add(ACL.SYSTEM);
             }
             try {
-                for (DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set : sets) {
-                    if (!Engine.create(set)
-                            .withCredentials(build.getProject(), ACL.SYSTEM)
-                            .from(build, DeploySourceOrigin.RUN)
-                            .withLauncher(launcher)
-                            .withListener(listener)
-                            .build()
-                            .perform()) {
-                        return false;
+                return new HostDeployer(hostConcurrency) {
+                    @Override
+                    protected boolean deploy(DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set,
+                                             BuildListener listener) throws Throwable {
+                        return Engine.create(set)
+                                .withCredentials(build.getProject(), ACL.SYSTEM)
+                                .from(build, DeploySourceOrigin.RUN)
+                                .withTargetConcurrency(set.getTargetConcurrency())
+                                .withLauncher(launcher)
+                                .withListener(listener)
+                                .build()
+                                .perform();
                     }
-                }
+                }.perform(sets, listener);
+            } catch (InterruptedException e) {
+                // aborted - > abort the build
+                throw e;
             } catch (Throwable t) {
                 // deployment failed - > fail the build
                 t.printStackTrace(listener.getLogger());
                 return false;
             }
-            return true;
+        }
+
+        public int getHostConcurrency() {
+            return hostConcurrency;
         }
 
         @Override
@@ -670,6 +763,10 @@ public class DeployNowRunAction implements RunAction {
         public List<Cause> getCauses() {
             return causes;
         }
+
+        public List<DeployHost<?, ?>> getSets() {
+            return sets == null ? Collections.<DeployHost<?, ?>>emptyList() : Collections.unmodifiableList(sets);
+        }
     }
 
 }
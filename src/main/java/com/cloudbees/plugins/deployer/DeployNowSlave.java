@@ -56,7 +56,11 @@ public class DeployNowSlave extends Slave implements EphemeralNode {
     public static final String NODE_LABEL_STRING = "CloudBees Deploy Now Node";
 
     public DeployNowSlave() throws Descriptor.FormException, IOException {
-        super(Messages.DeployNowSlave_NodeName(), Messages.DeployNowSlave_NodeDescription(), "", 1,
+        this(DeployNowConfiguration.get().getExecutors());
+    }
+
+    public DeployNowSlave(int numExecutors) throws Descriptor.FormException, IOException {
+        super(Messages.DeployNowSlave_NodeName(), Messages.DeployNowSlave_NodeDescription(), "", numExecutors,
                 Mode.EXCLUSIVE, null, null, DeployNowComputer.RETENTION_STRATEGY,
                 Collections.<NodeProperty<?>>singletonList(new NodePropertyImpl()));
     }
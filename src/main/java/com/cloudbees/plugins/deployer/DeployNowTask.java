@@ -24,18 +24,25 @@
 
 package com.cloudbees.plugins.deployer;
 
+import com.cloudbees.plugins.deployer.hosts.DeployHost;
 import hudson.model.AbstractBuild;
 import hudson.model.Computer;
+import hudson.model.Executor;
 import hudson.model.Label;
 import hudson.model.Node;
 import hudson.model.Queue;
+import hudson.model.Resource;
 import hudson.model.ResourceList;
 import hudson.model.labels.LabelAtom;
 import hudson.model.queue.AbstractQueueTask;
 import hudson.model.queue.CauseOfBlockage;
 import hudson.model.queue.SubTask;
+import hudson.model.queue.WorkUnit;
+import jenkins.model.Jenkins;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -75,9 +82,52 @@ public class DeployNowTask extends AbstractQueueTask {
                 }
             });
         }
+        if (isBuildDeploying()) {
+            return CauseOfBlockage.fromMessage(Messages._DeployNowTask_AlreadyDeploying(build.getFullDisplayName()));
+        }
         return null;
     }
 
+    /**
+     * Checks whether another deployment of the same build is running or about to start, as deployments of different
+     * builds may run concurrently but deployments of the same build must not overlap.
+     *
+     * @return {@code true} if another deployment of the same build is running or about to start.
+     */
+    private boolean isBuildDeploying() {
+        DeployNowRunAction action = build.getAction(DeployNowRunAction.class);
+        if (action != null && action.isDeploying()) {
+            return true;
+        }
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return false;
+        }
+        for (Queue.BuildableItem item : jenkins.getQueue().getPendingItems()) {
+            if (isSameBuild(item.task)) {
+                return true;
+            }
+        }
+        for (Node node : jenkins.getNodes()) {
+            if (node instanceof DeployNowSlave) {
+                Computer computer = node.toComputer();
+                if (computer != null) {
+                    for (Executor executor : computer.getExecutors()) {
+                        WorkUnit workUnit = executor.getCurrentWorkUnit();
+                        if (workUnit != null && isSameBuild(workUnit.work)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isSameBuild(SubTask task) {
+        return task instanceof DeployNowTask && build.equals(((DeployNowTask) task).getBuild());
+    }
+
     public String getName() {
         return build.getDisplayName() + name;
     }
@@ -98,11 +148,29 @@ public class DeployNowTask extends AbstractQueueTask {
     }
 
     public boolean isConcurrentBuild() {
-        return false;
+        // deployments of the same build are kept apart by getCauseOfBlockage()
+        return true;
     }
 
+    /**
+     * Returns a {@link Resource} for the deploy endpoint of each {@link DeployHost} that declares one, so that the
+     * queue limits the number of concurrent deployments to each endpoint.
+     */
     public ResourceList getResourceList() {
-        return new ResourceList();
+        Map<String, Integer> limits = new LinkedHashMap<String, Integer>();
+        for (DeployHost<?, ?> set : deployer.getSets()) {
+            String key = set.getDeployResourceKey();
+            if (key != null) {
+                int limit = Math.max(1, set.getDeployResourceLimit());
+                Integer existing = limits.get(key);
+                limits.put(key, existing == null ? limit : Math.min(existing, limit));
+            }
+        }
+        ResourceList resources = new ResourceList();
+        for (Map.Entry<String, Integer> entry : limits.entrySet()) {
+            resources.w(new Resource(null, "Deploy endpoint " + entry.getKey(), entry.getValue()));
+        }
+        return resources;
     }
 
     public String getDisplayName() {
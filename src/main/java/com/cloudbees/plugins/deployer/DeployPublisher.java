@@ -47,6 +47,7 @@ import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.io.IOException;
 import java.io.ObjectStreamException;
@@ -67,6 +68,11 @@ public class DeployPublisher extends Notifier {
 
     private final List<? extends DeployHost<?, ?>> hosts;
 
+    /**
+     * The maximum number of hosts to deploy concurrently.
+     */
+    private int hostConcurrency = 1;
+
     @DataBoundConstructor
     public DeployPublisher(List<? extends DeployHost<?, ?>> hosts, boolean deployIfUnstable) {
         this.hosts = new ArrayList<DeployHost<?, ?>>(hosts == null ? Collections.<DeployHost<?, ?>>emptySet() : hosts);
@@ -81,6 +87,15 @@ public class DeployPublisher extends Notifier {
         return hosts;
     }
 
+    public int getHostConcurrency() {
+        return Math.max(1, hostConcurrency);
+    }
+
+    @DataBoundSetter
+    public void setHostConcurrency(int hostConcurrency) {
+        this.hostConcurrency = Math.max(1, hostConcurrency);
+    }
+
     public BuildStepMonitor getRequiredMonitorService() {
         return BuildStepMonitor.NONE;
     }
@@ -89,7 +104,7 @@ public class DeployPublisher extends Notifier {
      * {@inheritDoc}
      */
     @Override
-    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+    public boolean perform(final AbstractBuild<?, ?> build, final Launcher launcher, BuildListener listener)
             throws InterruptedException, IOException {
         final Result result = build.getResult();
         if (result != null && result.isWorseThan(deployIfUnstable ? Result.UNSTABLE : Result.SUCCESS)) {
@@ -98,23 +113,28 @@ public class DeployPublisher extends Notifier {
             return true;
         }
         try {
-            for (DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set : hosts) {
-                if (!Engine.create(set)
-                        .withCredentials(build.getProject(), ACL.SYSTEM)
-                        .from(build, DeploySourceOrigin.WORKSPACE, DeploySourceOrigin.RUN)
-                        .withLauncher(launcher)
-                        .withListener(listener)
-                        .build()
-                        .perform()) {
-                    return false;
+            return new HostDeployer(getHostConcurrency()) {
+                @Override
+                protected boolean deploy(DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set,
+                                         BuildListener listener) throws Throwable {
+                    return Engine.create(set)
+                            .withCredentials(build.getProject(), ACL.SYSTEM)
+                            .from(build, DeploySourceOrigin.WORKSPACE, DeploySourceOrigin.RUN)
+                            .withTargetConcurrency(set.getTargetConcurrency())
+                            .withLauncher(launcher)
+                            .withListener(listener)
+                            .build()
+                            .perform();
                 }
-            }
+            }.perform(hosts, listener);
+        } catch (InterruptedException e) {
+            // aborted - > abort the build
+            throw e;
         } catch (Throwable t) {
             // deployment failed - > fail the build
             t.printStackTrace(listener.getLogger());
             return false;
         }
-        return true;
     }
 
     /**
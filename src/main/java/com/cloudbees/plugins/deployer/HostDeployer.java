@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer;
+
+import com.cloudbees.plugins.deployer.hosts.DeployHost;
+import com.cloudbees.plugins.deployer.targets.DeployTarget;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+import hudson.util.ExceptionCatchingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.security.ImpersonatingExecutorService;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the deployment of each of a list of {@link DeployHost}s, either one after the other or concurrently on a
+ * bounded pool. When running concurrently, each line logged by a host is prefixed with the host's display name so
+ * that the build log stays readable.
+ */
+abstract class HostDeployer {
+
+    /**
+     * The maximum number of hosts to deploy concurrently.
+     */
+    private final int hostConcurrency;
+
+    /**
+     * Constructor.
+     *
+     * @param hostConcurrency the maximum number of hosts to deploy concurrently, values less than {@code 2} deploy the
+     *                        hosts one after the other.
+     */
+    HostDeployer(int hostConcurrency) {
+        this.hostConcurrency = Math.max(1, hostConcurrency);
+    }
+
+    /**
+     * Deploys a single host.
+     *
+     * @param set      the host.
+     * @param listener the listener to log the deployment to.
+     * @return {@code true} if the deployment succeeded.
+     * @throws Throwable if the deployment failed.
+     */
+    protected abstract boolean deploy(@NonNull DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set,
+                                      @NonNull BuildListener listener) throws Throwable;
+
+    /**
+     * Deploys all the hosts. When deploying concurrently every host is deployed even if another fails, and the first
+     * failure in host order is then rethrown, as when deploying one after the other. If interrupted, the deployments
+     * in progress are interrupted and waited for, so that nothing is written to the log once the build has finished.
+     *
+     * @param hosts    the hosts.
+     * @param listener the listener to log the deployments to.
+     * @return {@code true} if all the deployments succeeded.
+     * @throws InterruptedException if interrupted.
+     * @throws Throwable            the first failure, in host order, if a deployment failed.
+     */
+    public boolean perform(@NonNull List<? extends DeployHost<?, ?>> hosts, @NonNull BuildListener listener)
+            throws Throwable {
+        if (hostConcurrency <= 1 || hosts.size() <= 1) {
+            for (DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set : hosts) {
+                if (!deploy(set, listener)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        final PrintStream logger = listener.getLogger();
+        logger.println("[cloudbees-deployer] Deploying to " + hosts.size() + " hosts with up to " + hostConcurrency
+                + " concurrently");
+        final ExecutorService executor = new ImpersonatingExecutorService(
+                Executors.newFixedThreadPool(Math.min(hostConcurrency, hosts.size()),
+                        new NamedThreadFactory("DeployHost",
+                                new ExceptionCatchingThreadFactory(Executors.defaultThreadFactory()))),
+                Jenkins.getAuthentication());
+        final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(hosts.size());
+        boolean success = true;
+        Throwable failure = null;
+        try {
+            for (final DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set : hosts) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        PrefixingOutputStream out =
+                                new PrefixingOutputStream(logger, "[" + set.getDisplayName() + "] ");
+                        BuildListener hostListener = new StreamBuildListener(out, Charset.defaultCharset());
+                        try {
+                            return deploy(set, hostListener);
+                        } catch (Exception e) {
+                            throw e;
+                        } catch (Error e) {
+                            throw e;
+                        } catch (Throwable t) {
+                            throw new IOException(t);
+                        } finally {
+                            hostListener.getLogger().flush();
+                            out.close();
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    success = futures.get(i).get() && success;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        // only the first failure is rethrown, so report the others here
+                        logger.println("[" + hosts.get(i).getDisplayName() + "] " + cause);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<Boolean> future : futures) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+            awaitTermination(executor);
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return success;
+    }
+
+    /**
+     * Waits for the deployments to stop, ignoring interrupts as this is only used while propagating one.
+     *
+     * @param executor the executor running the deployments.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        while (true) {
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                return;
+            } catch (InterruptedException e) {
+                // keep waiting
+            }
+        }
+    }
+
+    /**
+     * Prefixes each line written to a shared stream, writing whole lines at a time so that lines from concurrent
+     * writers are not interleaved.
+     */
+    private static class PrefixingOutputStream extends LineTransformationOutputStream {
+        /**
+         * The stream shared by all the hosts.
+         */
+        private final PrintStream out;
+        /**
+         * The prefix.
+         */
+        private final byte[] prefix;
+
+        PrefixingOutputStream(PrintStream out, String prefix) {
+            this.out = out;
+            this.prefix = prefix.getBytes(Charset.defaultCharset());
+        }
+
+        @Override
+        protected void eol(byte[] b, int len) throws IOException {
+            synchronized (out) {
+                out.write(prefix);
+                out.write(b, 0, len);
+                out.flush();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the shared stream belongs to the build
+            forceEol();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+ * Uploads a file to a receiver in fixed size chunks, keeping a checkpoint of the bytes the receiver has acknowledged
+ * so that an upload that fails part way through resumes from the last acknowledged chunk rather than from the start.
+ * Receivers that can report how much of an upload they hold should implement {@link #queryAcknowledged()} so that an
+ * upload can also be resumed by a new instance, e.g. when the {@link Engine} retries the deploy actor.
+ * <p>
+ * Instances are intended to be created and used by a deploy actor on the node holding the file.
+ */
+public abstract class ChunkedUpload {
+
+    /**
+     * The chunk size used when none is specified.
+     */
+    public static final int DEFAULT_CHUNK_SIZE =
+            Integer.getInteger(ChunkedUpload.class.getName() + ".chunkSize", 8 * 1024 * 1024);
+
+    /**
+     * The source of jitter for retry delays.
+     */
+    private static final Random RANDOM = new Random();
+
+    /**
+     * The file to upload.
+     */
+    @NonNull
+    private final File file;
+
+    /**
+     * The maximum number of bytes to send in each chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * The length of the file when the upload was created.
+     */
+    private final long length;
+
+    /**
+     * The checkpoint: the number of bytes from the start of the file that the receiver has acknowledged.
+     */
+    private volatile long acknowledged;
+
+    /**
+     * Whether the receiver has acknowledged the whole file.
+     */
+    private volatile boolean complete;
+
+    /**
+     * The number of chunks sent, including any that failed.
+     */
+    private volatile int chunksSent;
+
+    /**
+     * Constructor.
+     *
+     * @param file      the file to upload.
+     * @param chunkSize the maximum number of bytes to send in each chunk.
+     */
+    protected ChunkedUpload(@NonNull File file, int chunkSize) {
+        file.getClass(); // throw NPE if null
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.length = file.length();
+    }
+
+    @NonNull
+    public File getFile() {
+        return file;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the checkpoint: the number of bytes from the start of the file that the receiver has acknowledged.
+     *
+     * @return the number of bytes that the receiver has acknowledged.
+     */
+    public long getAcknowledged() {
+        return acknowledged;
+    }
+
+    /**
+     * Returns {@code true} once the receiver has acknowledged the whole file.
+     *
+     * @return {@code true} once the receiver has acknowledged the whole file.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the number of chunks sent, including any that failed.
+     *
+     * @return the number of chunks sent.
+     */
+    public int getChunksSent() {
+        return chunksSent;
+    }
+
+    /**
+     * Asks the receiver how many bytes from the start of the file it already holds. The default implementation
+     * returns the local checkpoint.
+     *
+     * @return the number of bytes the receiver holds.
+     * @throws IOException if the receiver could not be asked.
+     */
+    protected long queryAcknowledged() throws IOException {
+        return acknowledged;
+    }
+
+    /**
+     * Sends a chunk to the receiver.
+     *
+     * @param buffer the buffer holding the chunk.
+     * @param len    the number of bytes in the chunk, which is {@code 0} only when uploading an empty file.
+     * @param offset the offset of the chunk in the file.
+     * @return the number of bytes from the start of the file that the receiver has acknowledged after this chunk.
+     * @throws IOException if the chunk could not be sent.
+     */
+    protected abstract long sendChunk(@NonNull byte[] buffer, int len, long offset) throws IOException;
+
+    /**
+     * Uploads the rest of the file, starting from the number of bytes the receiver reports it holds.
+     *
+     * @throws IOException          if a chunk could not be sent, the checkpoint records the progress made.
+     * @throws InterruptedException if interrupted between chunks.
+     */
+    public void upload() throws IOException, InterruptedException {
+        if (complete) {
+            return;
+        }
+        acknowledged = Math.max(0L, Math.min(length, queryAcknowledged()));
+        complete = length > 0 && acknowledged == length;
+        if (complete) {
+            return;
+        }
+        byte[] buffer = new byte[(int) Math.min(chunkSize, Math.max(1L, length))];
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            while (!complete) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long offset = acknowledged;
+                int len = (int) Math.min(chunkSize, length - offset);
+                in.seek(offset);
+                in.readFully(buffer, 0, len);
+                chunksSent++;
+                long ack = sendChunk(buffer, len, offset);
+                if (ack > offset + len) {
+                    throw new IOException("Receiver acknowledged " + ack + " bytes after being sent "
+                            + (offset + len));
+                }
+                if (ack <= offset && len > 0) {
+                    acknowledged = Math.max(0L, ack);
+                    throw new IOException("Receiver did not acknowledge any of the chunk at offset " + offset);
+                }
+                acknowledged = ack;
+                complete = ack == length;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Uploads the rest of the file, resuming from the last acknowledged chunk after each failure that the policy
+     * allows to be retried.
+     *
+     * @param retryPolicy the policy for retrying failed chunks.
+     * @throws IOException          if the upload failed and the policy does not allow a retry.
+     * @throws InterruptedException if interrupted.
+     */
+    public void upload(@NonNull RetryPolicy retryPolicy) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                upload();
+                return;
+            } catch (IOException e) {
+                if (!retryPolicy.shouldRetry(attempt, e)) {
+                    throw e;
+                }
+                Thread.sleep(retryPolicy.getDelayMillis(attempt, RANDOM));
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Functions;
+import net.jcip.annotations.Immutable;
+
+import java.io.Serializable;
+
+/**
+ * The outcome of compressing an application file on its way to the deploy endpoint.
+ */
+@Immutable
+public final class CompressionStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The name of the {@link TransferCodec} used.
+     */
+    @NonNull
+    private final String codec;
+
+    /**
+     * The bytes before compression.
+     */
+    private final long rawBytes;
+
+    /**
+     * The bytes sent over the wire.
+     */
+    private final long wireBytes;
+
+    public CompressionStats(@NonNull String codec, long rawBytes, long wireBytes) {
+        codec.getClass(); // throw NPE if null
+        this.codec = codec;
+        this.rawBytes = rawBytes;
+        this.wireBytes = wireBytes;
+    }
+
+    @NonNull
+    public String getCodec() {
+        return codec;
+    }
+
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    /**
+     * Returns the bytes saved by compression, negative if compression made the data larger.
+     *
+     * @return the bytes saved by compression.
+     */
+    public long getBytesSaved() {
+        return rawBytes - wireBytes;
+    }
+
+    /**
+     * Returns the ratio of the bytes sent over the wire to the bytes before compression.
+     *
+     * @return the compression ratio, {@code 1.0} when there was nothing to compress.
+     */
+    public double getRatio() {
+        return rawBytes == 0 ? 1.0 : (double) wireBytes / rawBytes;
+    }
+
+    /**
+     * Returns a one line summary for the build log.
+     *
+     * @return a one line summary for the build log.
+     */
+    @NonNull
+    public String toSummary() {
+        return String.format("%s %s -> %s (ratio %.2f, saved %s)", codec, Functions.humanReadableByteSize(rawBytes),
+                Functions.humanReadableByteSize(wireBytes), getRatio(),
+                Functions.humanReadableByteSize(Math.max(0L, getBytesSaved())));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "CompressionStats{codec='" + codec + "', rawBytes=" + rawBytes + ", wireBytes=" + wireBytes + '}';
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Base class for deploy actors that deploy a directory by transferring only the files that have changed since the
+ * previous deployment to the same location. The {@link Engine} supplies the {@link DirectoryManifest} of the previous
+ * deployment, the manifest of the directory is computed on the node holding it in the same round trip as the
+ * deployment and is recorded by the {@link Engine} once the deployment succeeds. Engines must implement
+ * {@link Engine#getExpectedLocation(com.cloudbees.plugins.deployer.targets.DeployTarget)} for the previous manifest
+ * to be found, otherwise every deployment is a full deployment.
+ *
+ * @param <T> the return type.
+ */
+public abstract class DeltaDeployActor<T> extends MasterToSlaveFileCallable<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The manifest of the previous deployment to the location.
+     */
+    @CheckForNull
+    private DirectoryManifest previous;
+
+    /**
+     * The manifest of the directory, once computed.
+     */
+    @CheckForNull
+    private transient DirectoryManifest manifest;
+
+    /**
+     * Sets the manifest of the previous deployment to the location.
+     *
+     * @param previous the manifest of the previous deployment or {@code null} to deploy every file.
+     */
+    void setPrevious(@CheckForNull DirectoryManifest previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Returns the manifest of the directory once {@link #invoke(File, VirtualChannel)} has been called.
+     *
+     * @return the manifest of the directory or {@code null} if the application file is not a directory.
+     */
+    @CheckForNull
+    DirectoryManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final T invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+        if (!f.isDirectory()) {
+            return invoke(f, channel, null);
+        }
+        manifest = DirectoryManifest.of(f);
+        return invoke(f, channel, manifest.diff(previous));
+    }
+
+    /**
+     * Performs the deployment of the application file.
+     *
+     * @param f       the application file.
+     * @param channel the channel back to the master.
+     * @param delta   the files to transfer and delete or {@code null} if the application file is not a directory.
+     * @return the result of the deployment.
+     * @throws IOException          if something goes wrong.
+     * @throws InterruptedException if interrupted.
+     */
+    public abstract T invoke(File f, VirtualChannel channel, @CheckForNull DirectoryManifest.Delta delta)
+            throws IOException, InterruptedException;
+}
@@ -0,0 +1,43 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import java.io.Closeable;
+
+/**
+ * State that an {@link Engine} shares between the deployments of all the targets of a single
+ * {@link com.cloudbees.plugins.deployer.hosts.DeployHost}, such as an authenticated connection or an access token.
+ * A session is opened by {@link Engine#openSession()} the first time {@link Engine#getSession()} is called and is
+ * closed once all the targets have been deployed, unless it was shared through the {@link SessionCache} in which case
+ * the cache closes it when it is evicted and no longer in use.
+ * <p>
+ * Sessions live on the master. The deploy actors returned by {@link Engine#newDeployActor(
+ * com.cloudbees.plugins.deployer.targets.DeployTarget)} are sent to the node holding the application file, so an
+ * engine should copy whatever the actor needs from the session (e.g. a token) rather than the session itself.
+ * Sessions may be used by several targets concurrently and must be thread safe.
+ */
+public interface DeploySession extends Closeable {
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import jenkins.util.Timer;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interrupts the thread deploying a target if the deployment does not finish before its deadline. Interrupting the
+ * thread that is waiting on a remote {@link hudson.FilePath.FileCallable} cancels the callable on the remote node.
+ */
+final class DeployWatchdog implements Runnable {
+
+    private enum State {
+        RUNNING,
+        TIMED_OUT,
+        DONE
+    }
+
+    /**
+     * The thread to interrupt.
+     */
+    @NonNull
+    private final Thread thread;
+
+    /**
+     * The message of the exception to report when the deadline expires.
+     */
+    @NonNull
+    private final String message;
+
+    /**
+     * Guarded by {@code this}.
+     */
+    @NonNull
+    private State state = State.RUNNING;
+
+    /**
+     * Guarded by {@code this}.
+     */
+    private boolean timedOut;
+
+    /**
+     * Whether this watchdog interrupted the thread, guarded by {@code this}. An interrupt that was already pending
+     * when the deadline expired came from someone else, e.g. a build abort, and is left alone.
+     */
+    private boolean delivered;
+
+    /**
+     * Guarded by {@code this}.
+     */
+    @CheckForNull
+    private ScheduledFuture<?> future;
+
+    private DeployWatchdog(@NonNull Thread thread, @NonNull String message) {
+        this.thread = thread;
+        this.message = message;
+    }
+
+    /**
+     * Starts watching the current thread.
+     *
+     * @param timeoutNanos the time the current thread has to finish or {@link Long#MAX_VALUE} for no deadline.
+     * @param message      the message of the exception to report when the deadline expires.
+     * @return the watchdog, which must be {@link #finish()}ed by the current thread.
+     */
+    @NonNull
+    static DeployWatchdog start(long timeoutNanos, @NonNull String message) {
+        DeployWatchdog watchdog = new DeployWatchdog(Thread.currentThread(), message);
+        if (timeoutNanos <= 0) {
+            synchronized (watchdog) {
+                watchdog.state = State.DONE;
+                watchdog.timedOut = true;
+            }
+        } else if (timeoutNanos != Long.MAX_VALUE) {
+            ScheduledFuture<?> future = Timer.get().schedule(watchdog, timeoutNanos, TimeUnit.NANOSECONDS);
+            synchronized (watchdog) {
+                watchdog.future = future;
+            }
+        }
+        return watchdog;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void run() {
+        if (state == State.RUNNING) {
+            state = State.TIMED_OUT;
+            timedOut = true;
+            if (!thread.isInterrupted()) {
+                delivered = true;
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the deadline has expired.
+     *
+     * @return {@code true} if the deadline has expired.
+     */
+    public synchronized boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Returns {@code true} if the thread was interrupted by this watchdog rather than by someone else.
+     *
+     * @return {@code true} if the thread was interrupted by this watchdog rather than by someone else.
+     */
+    public synchronized boolean isInterruptDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Stops watching the thread. If this watchdog interrupted the thread, that interrupt is cleared so that it does
+     * not leak into whatever the thread does next. An interrupt from anyone else that was pending when the deadline
+     * expired is kept. Must be called from the watched thread.
+     *
+     * @return {@code true} if the deadline expired.
+     */
+    public synchronized boolean finish() {
+        if (state == State.TIMED_OUT && delivered) {
+            Thread.interrupted();
+        } else if (state == State.RUNNING && future != null) {
+            future.cancel(false);
+        }
+        state = State.DONE;
+        return timedOut;
+    }
+
+    /**
+     * Returns the message of the exception to report when the deadline expires.
+     *
+     * @return the message of the exception to report when the deadline expires.
+     */
+    @NonNull
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.util.AtomicFileWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded cache of file digests held by the JVM of the node executing the deployment, so that redeploying the same
+ * file does not require hashing it again. Entries are keyed by canonical path and are only valid while the length
+ * and last modified time of the file are unchanged. The cache of a node is saved under the root directory of the
+ * node so that it survives restarts of the node.
+ */
+public final class DigestCache {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(DigestCache.class.getName());
+
+    /**
+     * The maximum number of entries to retain.
+     */
+    private static final int MAX_ENTRIES = Integer.getInteger(DigestCache.class.getName() + ".maxEntries", 1024);
+
+    /**
+     * The cache on this JVM for callers that do not know the root directory of the node.
+     */
+    private static final DigestCache INSTANCE = new DigestCache(MAX_ENTRIES, null);
+
+    /**
+     * The caches on this JVM keyed by the file they are saved to.
+     */
+    private static final ConcurrentMap<File, DigestCache> PERSISTENT = new ConcurrentHashMap<File, DigestCache>();
+
+    /**
+     * The entries keyed by canonical path, in least recently used order.
+     */
+    private final Map<String, Entry> entries;
+
+    /**
+     * The number of lookups that found a valid entry.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * The number of lookups that had to compute the digest.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The file the entries are saved to or {@code null} if they are only held in memory.
+     */
+    @CheckForNull
+    private final File store;
+
+    /**
+     * Guards writing the {@link #store}, so that saves are written in the order they were taken.
+     */
+    private final Object saveLock = new Object();
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries the maximum number of entries to retain.
+     * @param store      the file to load the entries from and save them to or {@code null} to only hold them in
+     *                   memory.
+     */
+    DigestCache(final int maxEntries, @CheckForNull File store) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.store = store;
+        if (store != null) {
+            load();
+        }
+    }
+
+    /**
+     * Returns the in-memory cache for this JVM.
+     *
+     * @return the in-memory cache for this JVM.
+     */
+    @NonNull
+    public static DigestCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cache saved under the root directory of a node.
+     *
+     * @param rootDir the root directory of the node or {@code null} for the in-memory cache of this JVM.
+     * @return the cache for the node.
+     */
+    @NonNull
+    public static DigestCache get(@CheckForNull File rootDir) {
+        if (rootDir == null) {
+            return INSTANCE;
+        }
+        File store = new File(rootDir, DigestCache.class.getName() + ".txt");
+        DigestCache cache = PERSISTENT.get(store);
+        if (cache == null) {
+            DigestCache loaded = new DigestCache(MAX_ENTRIES, store);
+            cache = PERSISTENT.putIfAbsent(store, loaded);
+            if (cache == null) {
+                cache = loaded;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the cached digest of the file if the file has not changed since it was cached.
+     *
+     * @param file the file.
+     * @return the MD5 digest of the file or {@code null} if there is no valid entry.
+     * @throws IOException if the canonical path of the file cannot be determined.
+     */
+    @CheckForNull
+    public String lookup(@NonNull File file) throws IOException {
+        String key = file.getCanonicalPath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+                return entry.digest;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the MD5 digest of the file, computing it only if there is no valid cached entry.
+     *
+     * @param file the file.
+     * @return the MD5 digest of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    @NonNull
+    public String getDigest(@NonNull File file) throws IOException {
+        return resolve(file).getDigest();
+    }
+
+    /**
+     * Returns the MD5 digest of the file, computing it only if there is no valid cached entry, together with whether
+     * the digest came from the cache.
+     *
+     * @param file the file.
+     * @return the MD5 digest of the file and whether it was cached.
+     * @throws IOException if the file cannot be read.
+     */
+    @NonNull
+    public Result resolve(@NonNull File file) throws IOException {
+        String digest = lookup(file);
+        if (digest != null) {
+            hits.incrementAndGet();
+            return new Result(digest, true);
+        }
+        misses.incrementAndGet();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            digest = Util.getDigestOf(fis);
+        } finally {
+            fis.close();
+        }
+        if (file.length() == length && file.lastModified() == lastModified) {
+            // only cache if the file did not change while we were reading it
+            put(file, length, lastModified, digest);
+        }
+        return new Result(digest, false);
+    }
+
+    /**
+     * Records the digest of a file that has been computed by other means, such as while streaming the file.
+     *
+     * @param file   the file.
+     * @param digest the MD5 digest of the file's current content.
+     * @throws IOException if the canonical path of the file cannot be determined.
+     */
+    public void put(@NonNull File file, @NonNull String digest) throws IOException {
+        put(file, file.length(), file.lastModified(), digest);
+    }
+
+    private void put(File file, long length, long lastModified, String digest) throws IOException {
+        String key = file.getCanonicalPath();
+        synchronized (entries) {
+            entries.put(key, new Entry(length, lastModified, digest));
+        }
+        save();
+    }
+
+    /**
+     * Loads the entries saved in the {@link #store}, skipping any that cannot be parsed.
+     */
+    private void load() {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(store), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // digest length lastModified path, the path last as it may contain spaces
+                    String[] fields = line.split(" ", 4);
+                    if (fields.length != 4) {
+                        continue;
+                    }
+                    try {
+                        Entry entry = new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]);
+                        synchronized (entries) {
+                            entries.put(fields[3], entry);
+                        }
+                    } catch (NumberFormatException e) {
+                        // skip the corrupt entry
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (FileNotFoundException e) {
+            // nothing saved yet
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not load the digest cache from " + store, e);
+        }
+    }
+
+    /**
+     * Saves the entries to the {@link #store}, least recently used first so that loading them preserves the order.
+     */
+    private void save() {
+        if (store == null) {
+            return;
+        }
+        synchronized (saveLock) {
+            List<String> lines;
+            synchronized (entries) {
+                lines = new ArrayList<String>(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    lines.add(entry.digest + " " + entry.length + " " + entry.lastModified + " " + e.getKey());
+                }
+            }
+            try {
+                File dir = store.getParentFile();
+                if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Could not create " + dir);
+                }
+                AtomicFileWriter writer = new AtomicFileWriter(store);
+                try {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                    writer.commit();
+                } finally {
+                    writer.abort();
+                }
+            } catch (IOException e) {
+                // the cache still works in memory
+                LOGGER.log(Level.FINE, "Could not save the digest cache to " + store, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lookups that were answered from the cache.
+     *
+     * @return the number of lookups that were answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that required the digest to be computed.
+     *
+     * @return the number of lookups that required the digest to be computed.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries currently cached.
+     *
+     * @return the number of entries currently cached.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * The outcome of {@link #resolve(File)}.
+     */
+    public static final class Result {
+        @NonNull
+        private final String digest;
+        private final boolean cached;
+
+        Result(@NonNull String digest, boolean cached) {
+            this.digest = digest;
+            this.cached = cached;
+        }
+
+        /**
+         * Returns the MD5 digest of the file.
+         *
+         * @return the MD5 digest of the file.
+         */
+        @NonNull
+        public String getDigest() {
+            return digest;
+        }
+
+        /**
+         * Returns whether the digest was answered from the cache rather than computed.
+         *
+         * @return {@code true} if the digest was answered from the cache.
+         */
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    /**
+     * A cached digest.
+     */
+    private static final class Entry {
+        private final long length;
+        private final long lastModified;
+        @NonNull
+        private final String digest;
+
+        Entry(long length, long lastModified, @NonNull String digest) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+}
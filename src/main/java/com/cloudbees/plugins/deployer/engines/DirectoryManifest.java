@@ -0,0 +1,343 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import net.jcip.annotations.Immutable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The path, size and digest of every file in a deployed directory, used to work out which files have changed since
+ * the previous deployment of the directory to the same location.
+ */
+@Immutable
+public final class DirectoryManifest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The entries keyed by path relative to the directory, using {@code /} as the separator.
+     */
+    @NonNull
+    private final SortedMap<String, Entry> entries;
+
+    private DirectoryManifest(@NonNull SortedMap<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Computes the manifest of a directory, which should be done on the node holding the directory. Every file is
+     * hashed rather than going through the {@link DigestCache}, as a directory with many files would otherwise evict
+     * the digests of the archives that the cache is there for. Symbolic links to directories are not followed, so a
+     * link back up the tree cannot make the scan loop forever, and the files under them are not part of the manifest.
+     *
+     * @param dir the directory.
+     * @return the manifest.
+     * @throws IOException          if the directory could not be read.
+     * @throws InterruptedException if interrupted.
+     */
+    @NonNull
+    public static DirectoryManifest of(@NonNull File dir) throws IOException, InterruptedException {
+        SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+        scan(dir, "", entries);
+        return new DirectoryManifest(entries);
+    }
+
+    private static void scan(File dir, String prefix, Map<String, Entry> entries)
+            throws IOException, InterruptedException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Could not list " + dir);
+        }
+        for (File file : files) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            String path = prefix + file.getName();
+            if (file.isDirectory()) {
+                if (!Files.isSymbolicLink(file.toPath())) {
+                    scan(file, path + "/", entries);
+                }
+            } else if (file.isFile()) {
+                entries.put(path, new Entry(file.length(), Util.getDigestOf(file)));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of files.
+     *
+     * @return the number of files.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the entry for a path.
+     *
+     * @param path the path relative to the directory, using {@code /} as the separator.
+     * @return the entry or {@code null} if there is no file at the path.
+     */
+    @CheckForNull
+    public Entry get(@NonNull String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * Returns the paths of all the files in order.
+     *
+     * @return the paths of all the files in order.
+     */
+    @NonNull
+    public List<String> getPaths() {
+        return Collections.unmodifiableList(new ArrayList<String>(entries.keySet()));
+    }
+
+    /**
+     * Works out how to get from a previous deployment of the directory to this one.
+     *
+     * @param previous the manifest of the previous deployment or {@code null} if there is none, in which case every
+     *                 file must be transferred.
+     * @return the changes.
+     */
+    @NonNull
+    public Delta diff(@CheckForNull DirectoryManifest previous) {
+        List<String> added = new ArrayList<String>();
+        List<String> changed = new ArrayList<String>();
+        List<String> deleted = new ArrayList<String>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Entry old = previous == null ? null : previous.entries.get(entry.getKey());
+            if (old == null) {
+                added.add(entry.getKey());
+            } else if (!old.equals(entry.getValue())) {
+                changed.add(entry.getKey());
+            }
+        }
+        if (previous != null) {
+            for (String path : previous.entries.keySet()) {
+                if (!entries.containsKey(path)) {
+                    deleted.add(path);
+                }
+            }
+        }
+        return new Delta(this, previous == null, added, changed, deleted);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return entries.equals(((DirectoryManifest) o).entries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return entries.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "DirectoryManifest{" + entries.size() + " files}";
+    }
+
+    /**
+     * The size and digest of a file.
+     */
+    @Immutable
+    public static final class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long size;
+
+        @NonNull
+        private final String digest;
+
+        public Entry(long size, @NonNull String digest) {
+            digest.getClass(); // throw NPE if null
+            this.size = size;
+            this.digest = digest;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @NonNull
+        public String getDigest() {
+            return digest;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return size == entry.size && digest.equals(entry.digest);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return 31 * (int) (size ^ (size >>> 32)) + digest.hashCode();
+        }
+    }
+
+    /**
+     * The changes between two deployments of a directory.
+     */
+    @Immutable
+    public static final class Delta implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @NonNull
+        private final DirectoryManifest manifest;
+
+        private final boolean full;
+
+        @NonNull
+        private final List<String> added;
+
+        @NonNull
+        private final List<String> changed;
+
+        @NonNull
+        private final List<String> deleted;
+
+        private Delta(@NonNull DirectoryManifest manifest, boolean full, @NonNull List<String> added,
+                      @NonNull List<String> changed, @NonNull List<String> deleted) {
+            this.manifest = manifest;
+            this.full = full;
+            this.added = Collections.unmodifiableList(added);
+            this.changed = Collections.unmodifiableList(changed);
+            this.deleted = Collections.unmodifiableList(deleted);
+        }
+
+        /**
+         * Returns the manifest of the directory being deployed.
+         *
+         * @return the manifest of the directory being deployed.
+         */
+        @NonNull
+        public DirectoryManifest getManifest() {
+            return manifest;
+        }
+
+        /**
+         * Returns {@code true} if there is no previous deployment, so the whole directory must be deployed.
+         *
+         * @return {@code true} if the whole directory must be deployed.
+         */
+        public boolean isFull() {
+            return full;
+        }
+
+        @NonNull
+        public List<String> getAdded() {
+            return added;
+        }
+
+        @NonNull
+        public List<String> getChanged() {
+            return changed;
+        }
+
+        @NonNull
+        public List<String> getDeleted() {
+            return deleted;
+        }
+
+        /**
+         * Returns the paths of the files that must be transferred: the added and changed files.
+         *
+         * @return the paths of the files that must be transferred.
+         */
+        @NonNull
+        public List<String> getTransfers() {
+            List<String> result = new ArrayList<String>(added.size() + changed.size());
+            result.addAll(added);
+            result.addAll(changed);
+            Collections.sort(result);
+            return result;
+        }
+
+        /**
+         * Returns {@code true} if nothing has changed since the previous deployment.
+         *
+         * @return {@code true} if nothing has changed since the previous deployment.
+         */
+        public boolean isEmpty() {
+            return !full && added.isEmpty() && changed.isEmpty() && deleted.isEmpty();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return full
+                    ? "all " + manifest.size() + " files"
+                    : added.size() + " added, " + changed.size() + " changed, " + deleted.size() + " deleted of "
+                            + manifest.size() + " files";
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import com.cloudbees.plugins.deployer.records.DeployedApplicationLocation;
+import com.cloudbees.plugins.deployer.records.RecordWriter;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.init.Terminator;
+import hudson.model.Saveable;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the {@link DirectoryManifest} of the most recent successful deployment to each
+ * {@link DeployedApplicationLocation}, one file per location as manifests can be large. Manifests are saved by the
+ * {@link RecordWriter} so that deployments do not wait for the file to be written, and a failure to save one is
+ * logged rather than failing a deployment that has already succeeded.
+ */
+public final class DirectoryManifestStore {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(DirectoryManifestStore.class.getName());
+
+    private static final DirectoryManifestStore INSTANCE = new DirectoryManifestStore();
+
+    /**
+     * The directory the manifests of the running Jenkins are stored in, resolved on first use and forgotten when
+     * Jenkins shuts down.
+     */
+    @CheckForNull
+    private File dir;
+
+    /**
+     * The manifests queued on the {@link RecordWriter} and not yet written, keyed by file, so that loading a
+     * manifest sees the most recent save.
+     */
+    private final Map<File, Record> unsaved = new HashMap<File, Record>();
+
+    private DirectoryManifestStore() {
+    }
+
+    /**
+     * Returns the store.
+     *
+     * @return the store.
+     */
+    @NonNull
+    public static DirectoryManifestStore get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Forgets the directory of the manifests when Jenkins shuts down, so that the next Jenkins instance in the JVM
+     * resolves its own. Manifests still queued are written to the file they were queued for.
+     */
+    @Terminator
+    public static void forget() {
+        synchronized (INSTANCE) {
+            INSTANCE.dir = null;
+        }
+    }
+
+    @NonNull
+    private XmlFile getFile(@NonNull DeployedApplicationLocation location) {
+        if (dir == null) {
+            dir = new File(Jenkins.get().getRootDir(), DirectoryManifestStore.class.getName());
+        }
+        String key = Util.getDigestOf(location.getClass().getName() + ":" + location.getLocationURL());
+        return new XmlFile(Jenkins.XSTREAM2, new File(dir, key + ".xml"));
+    }
+
+    /**
+     * Returns the manifest of the most recent successful deployment to the location.
+     *
+     * @param location the location.
+     * @return the manifest or {@code null} if unknown.
+     */
+    @CheckForNull
+    public synchronized DirectoryManifest load(@NonNull DeployedApplicationLocation location) {
+        XmlFile file = getFile(location);
+        Record record = unsaved.get(file.getFile());
+        if (record != null) {
+            return record.manifest;
+        }
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            Object manifest = file.read();
+            return manifest instanceof DirectoryManifest ? (DirectoryManifest) manifest : null;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not load " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Records the manifest of a successful deployment to the location. The manifest is saved in the background.
+     *
+     * @param location the location.
+     * @param manifest the manifest or {@code null} if the deployment was not of a directory.
+     */
+    public synchronized void save(@NonNull DeployedApplicationLocation location,
+                                  @CheckForNull DirectoryManifest manifest) {
+        XmlFile file = getFile(location);
+        if (manifest == null && !unsaved.containsKey(file.getFile()) && !file.exists()) {
+            // nothing to forget
+            return;
+        }
+        Record record = new Record(file, manifest);
+        unsaved.put(file.getFile(), record);
+        RecordWriter.get().save(record);
+    }
+
+    /**
+     * A manifest queued to be saved. Records for the same file are equal, so that the {@link RecordWriter} only
+     * writes the most recent one.
+     */
+    private final class Record implements Saveable {
+        @NonNull
+        private final XmlFile file;
+        @CheckForNull
+        private final DirectoryManifest manifest;
+
+        Record(@NonNull XmlFile file, @CheckForNull DirectoryManifest manifest) {
+            this.file = file;
+            this.manifest = manifest;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void save() throws IOException {
+            synchronized (DirectoryManifestStore.this) {
+                if (unsaved.get(file.getFile()) != this) {
+                    // superseded by a more recent record
+                    return;
+                }
+                try {
+                    if (manifest == null) {
+                        if (file.exists() && !file.getFile().delete()) {
+                            LOGGER.log(Level.WARNING, "Could not delete {0}", file);
+                        }
+                    } else {
+                        file.write(manifest);
+                    }
+                } finally {
+                    unsaved.remove(file.getFile());
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Record && file.getFile().equals(((Record) o).file.getFile());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return file.getFile().hashCode();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "manifest " + file;
+        }
+    }
+}
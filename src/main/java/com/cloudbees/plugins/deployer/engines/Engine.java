@@ -26,40 +26,62 @@ package com.cloudbees.plugins.deployer.engines;
 
 import com.cloudbees.plugins.deployer.DeployEvent;
 import com.cloudbees.plugins.deployer.DeployListener;
+import com.cloudbees.plugins.deployer.DeployMetrics;
+import com.cloudbees.plugins.deployer.NamedThreadFactory;
 import com.cloudbees.plugins.deployer.exceptions.DeployException;
 import com.cloudbees.plugins.deployer.exceptions.DeploySourceNotFoundException;
 import com.cloudbees.plugins.deployer.hosts.DeployHost;
 import com.cloudbees.plugins.deployer.records.DeployedApplicationAction;
 import com.cloudbees.plugins.deployer.records.DeployedApplicationFingerprintFacet;
+import com.cloudbees.plugins.deployer.records.DeployedApplicationHistory;
 import com.cloudbees.plugins.deployer.records.DeployedApplicationLocation;
+import com.cloudbees.plugins.deployer.records.RecordWriter;
 import com.cloudbees.plugins.deployer.sources.DeploySource;
 import com.cloudbees.plugins.deployer.sources.DeploySourceOrigin;
 import com.cloudbees.plugins.deployer.targets.DeployTarget;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.BulkChange;
 import hudson.FilePath;
 import hudson.Launcher;
-import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
+import hudson.model.Computer;
 import hudson.model.Fingerprint;
 import hudson.model.Item;
+import hudson.model.Node;
 import hudson.remoting.VirtualChannel;
 import hudson.security.ACL;
+import hudson.tasks.Fingerprinter;
+import hudson.util.ExceptionCatchingThreadFactory;
 import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.FingerprintFacet;
 import jenkins.model.Jenkins;
+import jenkins.security.ImpersonatingExecutorService;
 import org.acegisecurity.Authentication;
 import org.apache.commons.io.IOUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A deployment engine knows how to deploy artifacts to a remote service.
@@ -68,6 +90,11 @@ public abstract class Engine<S extends DeployHost<S, T>, T extends DeployTarget<
 
     private final static String NO_MD5 = "NOMD5";
 
+    /**
+     * The source of jitter for retry delays.
+     */
+    private static final Random RANDOM = new Random();
+
     protected final Item deployScope;
     protected final List<Authentication> deployAuthentications;
     protected final AbstractBuild<?, ?> build;
@@ -75,6 +102,31 @@ public abstract class Engine<S extends DeployHost<S, T>, T extends DeployTarget<
     protected final Launcher launcher;
     protected final BuildListener listener;
     protected final Set<DeploySourceOrigin> sources;
+    protected final int targetConcurrency;
+    protected final boolean skipUnchanged;
+    @NonNull
+    protected final RetryPolicy retryPolicy;
+    protected final long targetTimeout;
+    protected final long hostTimeout;
+    protected final boolean sessionCaching;
+
+    /**
+     * The session shared by the targets, guarded by {@link #sessionLock}.
+     */
+    @CheckForNull
+    private DeploySession session;
+
+    /**
+     * Whether {@link #session} has been opened by the current run, guarded by {@link #sessionLock}.
+     */
+    private boolean sessionOpened;
+
+    /**
+     * Whether {@link #session} was acquired from the {@link SessionCache}, guarded by {@link #sessionLock}.
+     */
+    private boolean sessionCached;
+
+    private final Object sessionLock = new Object();
 
     protected Engine(EngineConfiguration<S, T> config) {
         final List<Authentication> deployAuthentications = config.getDeployAuthentications();
@@ -89,88 +141,518 @@ public abstract class Engine<S extends DeployHost<S, T>, T extends DeployTarget<
         final Set<DeploySourceOrigin> sources = config.getSources();
         this.sources = sources == null ? new HashSet<DeploySourceOrigin>() : new HashSet<DeploySourceOrigin>(
                 sources);
+        final Integer targetConcurrency = config.getTargetConcurrency();
+        this.targetConcurrency = Math.max(1, targetConcurrency == null
+                ? set.getTargetConcurrency()
+                : targetConcurrency);
+        this.skipUnchanged = Boolean.TRUE.equals(config.getSkipUnchanged());
+        final RetryPolicy retryPolicy = config.getRetryPolicy();
+        this.retryPolicy = retryPolicy == null ? RetryPolicy.NONE : retryPolicy;
+        final Long targetTimeout = config.getTargetTimeout();
+        this.targetTimeout = targetTimeout == null ? 0L : Math.max(0L, targetTimeout);
+        final Long hostTimeout = config.getHostTimeout();
+        this.hostTimeout = hostTimeout == null ? 0L : Math.max(0L, hostTimeout);
+        this.sessionCaching = Boolean.TRUE.equals(config.getSessionCaching());
     }
 
+    /**
+     * Deploys all the targets, blocking until they have completed. When the targets are deployed one at a time and
+     * there is no deadline, they are deployed on the calling thread. Otherwise they are deployed on a pool of
+     * threads, as the watchdog that enforces a deadline must not interrupt the build's executor, which would abort
+     * the build. If the calling thread is interrupted, the deployments in progress are interrupted and waited for
+     * before the {@link InterruptedException} is rethrown.
+     *
+     * @return {@code true} if the deployment succeeded.
+     * @throws Throwable the first failure, in target order, if any target failed.
+     */
     public boolean perform() throws Throwable {
+        if ((targetConcurrency <= 1 || set.getTargets().size() <= 1) && targetTimeout <= 0 && hostTimeout <= 0) {
+            final List<DeploySourceOrigin> validOrigins = getValidOrigins();
+            logDetails();
+            try {
+                for (T target : set.getTargets()) {
+                    deploy(target, validOrigins, Long.MAX_VALUE);
+                }
+            } finally {
+                closeSession();
+            }
+            return true;
+        }
+        List<TargetFuture> futures = start();
+        Throwable failure = null;
+        try {
+            // wait for all the deployments that have started, report failures in target order
+            for (TargetFuture future : futures) {
+                try {
+                    future.get();
+                } catch (CancellationException e) {
+                    // skipped as an earlier deployment failed
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            for (TargetFuture future : futures) {
+                future.cancel(true);
+            }
+            // do not leave deployments running against the host after the build has been aborted
+            for (TargetFuture future : futures) {
+                future.awaitFinished();
+            }
+            throw e;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return true;
+    }
+
+    /**
+     * Starts deploying all the targets on a pool of up to {@link #targetConcurrency} threads and returns without
+     * waiting for them to complete. Once a target has failed, the targets that have not yet started are cancelled.
+     * Cancelling a future interrupts the deployment of its target if it is in progress.
+     *
+     * @return a future for each target, in target order, that completes with the location the target was deployed to
+     *         or {@code null} if the engine does not record locations.
+     */
+    @NonNull
+    public List<CompletableFuture<DeployedApplicationLocation>> performAsync() {
+        return new ArrayList<CompletableFuture<DeployedApplicationLocation>>(start());
+    }
+
+    /**
+     * Returns the origins to resolve the sources of the targets from, in preference order.
+     *
+     * @return the origins to resolve the sources of the targets from, in preference order.
+     */
+    @NonNull
+    private List<DeploySourceOrigin> getValidOrigins() {
         final List<DeploySourceOrigin> validOrigins = new ArrayList<DeploySourceOrigin>(
                 DeploySourceOrigin.allInPreferenceOrder());
         validOrigins.retainAll(sources);
+        return validOrigins;
+    }
+
+    /**
+     * Implements {@link #performAsync()}.
+     *
+     * @return a future for each target, in target order.
+     */
+    @NonNull
+    private List<TargetFuture> start() {
+        final List<DeploySourceOrigin> validOrigins = getValidOrigins();
 
         logDetails();
-        for (T target : set.getTargets()) {
-            log("Deploying " + target.getDisplayName());
-            boolean found = false;
-            DeployEvent event = createEvent(target);
-            try {
-                DeploySource source = target.getArtifact();
-                if (source == null) {
-                    throw new DeploySourceNotFoundException(null,
-                            "Undefined source for " + target.getDisplayName());
+        final List<T> targets = set.getTargets();
+        final long hostDeadline = hostTimeout > 0
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hostTimeout)
+                : Long.MAX_VALUE;
+        if (targets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (targetConcurrency > 1 && targets.size() > 1) {
+            log("Deploying " + targets.size() + " applications with up to " + targetConcurrency + " concurrently");
+        }
+        final ExecutorService executor = new ImpersonatingExecutorService(
+                Executors.newFixedThreadPool(Math.min(targetConcurrency, targets.size()),
+                        new NamedThreadFactory("DeployEngine",
+                                new ExceptionCatchingThreadFactory(Executors.defaultThreadFactory()))),
+                Jenkins.getAuthentication());
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final AtomicInteger remaining = new AtomicInteger(targets.size());
+        // the session is only closed once no deployment can be using it, even if some futures were cancelled
+        final Runnable whenFinished = new Runnable() {
+            public void run() {
+                if (remaining.decrementAndGet() == 0) {
+                    try {
+                        closeSession();
+                    } finally {
+                        executor.shutdown();
+                    }
                 }
-                DeployedApplicationLocation location = null;
-                findSource:
-                for (DeploySourceOrigin origin : validOrigins) {
-                    if (source.getDescriptor().isSupported(origin)) {
-                        switch (origin) {
-                            case WORKSPACE: {
-                                FilePath workspace = build.getWorkspace();
-                                if (workspace != null) {
-                                    FilePath applicationFile = source.getApplicationFile(workspace);
-                                    if (applicationFile != null) {
-                                        found = true;
-                                        validate(applicationFile);
-                                        log("  Resolved from workspace as " + applicationFile);
-                                        location = process(applicationFile, target);
-                                        DeployListener.notifySuccess(set, target, event);
-                                        break findSource;
-                                    }
+            }
+        };
+        final List<TargetFuture> futures = new ArrayList<TargetFuture>(targets.size());
+        for (final T target : targets) {
+            final TargetFuture future = new TargetFuture(whenFinished);
+            futures.add(future);
+            future.setTask(executor.submit(new Runnable() {
+                public void run() {
+                    if (!future.start()) {
+                        return;
+                    }
+                    try {
+                        if (failed.get()) {
+                            log("Skipping " + target.getDisplayName() + " as an earlier deployment failed");
+                            future.skip();
+                            return;
+                        }
+                        future.complete(deploy(target, validOrigins, hostDeadline));
+                    } catch (Throwable t) {
+                        failed.set(true);
+                        future.completeExceptionally(t);
+                    } finally {
+                        future.finish();
+                    }
+                }
+            }));
+        }
+        return futures;
+    }
+
+    /**
+     * Opens the session to share between the deployments of all the targets. Engines that can reuse a connection or
+     * credentials across targets should override this method and call {@link #getSession()} from
+     * {@link #newDeployActor(DeployTarget)}.
+     *
+     * @return the session or {@code null} if the engine does not use sessions.
+     * @throws DeployException if the session could not be opened.
+     */
+    @CheckForNull
+    protected DeploySession openSession() throws DeployException {
+        return null;
+    }
+
+    /**
+     * Returns the identity of the host for sharing sessions with other engines through the {@link SessionCache}. Two
+     * engines of the same type with the same session key and authentications will share a session, so the key must
+     * identify everything the session depends on, e.g. the endpoint URL and the credentials ID.
+     *
+     * @return the identity of the host or {@code null} if sessions cannot be shared.
+     */
+    @CheckForNull
+    protected String getSessionKey() {
+        return null;
+    }
+
+    /**
+     * Returns the session shared by the targets, opening it with {@link #openSession()} on first use or acquiring
+     * it from the {@link SessionCache} if session caching is enabled. If the session cannot be opened, each target
+     * that asks for it will try to open it again.
+     *
+     * @return the session or {@code null} if the engine does not use sessions.
+     * @throws DeployException if the session could not be opened.
+     */
+    @CheckForNull
+    protected final DeploySession getSession() throws DeployException {
+        synchronized (sessionLock) {
+            if (!sessionOpened) {
+                String sessionKey = sessionCaching ? getSessionKey() : null;
+                if (sessionKey != null) {
+                    session = SessionCache.get().acquire(
+                            new SessionCache.Key(getClass(), sessionKey, deployAuthentications),
+                            new SessionCache.Opener() {
+                                public DeploySession open() throws DeployException {
+                                    return openSession();
                                 }
-                            }
-                            break;
-                            case RUN: {
-                                File applicationFile = source.getApplicationFile(build);
+                            });
+                    sessionCached = session != null;
+                } else {
+                    session = openSession();
+                }
+                sessionOpened = true;
+            }
+            return session;
+        }
+    }
+
+    /**
+     * Closes the session, if one was opened, once all the targets have been deployed.
+     */
+    private void closeSession() {
+        DeploySession session;
+        boolean sessionCached;
+        synchronized (sessionLock) {
+            session = this.session;
+            sessionCached = this.sessionCached;
+            this.session = null;
+            this.sessionCached = false;
+            sessionOpened = false;
+        }
+        if (session != null && sessionCached) {
+            SessionCache.get().release(session);
+        } else if (session != null) {
+            try {
+                session.close();
+            } catch (IOException e) {
+                log("Could not close session: " + e.getMessage());
+            } catch (RuntimeException e) {
+                log("Could not close session: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deploys a single target, notifying the {@link DeployListener}s of the outcome.
+     *
+     * @param target       the target to deploy.
+     * @param validOrigins the origins to resolve the target's source from in preference order.
+     * @param hostDeadline the {@link System#nanoTime()} by which all targets must be deployed or {@link Long#MAX_VALUE}
+     *                     for no deadline.
+     * @return the location the target was deployed to or {@code null} if the engine does not record locations.
+     * @throws DeployException      if the deployment failed or timed out.
+     * @throws InterruptedException if the deployment was interrupted.
+     */
+    @CheckForNull
+    private DeployedApplicationLocation deploy(T target, List<DeploySourceOrigin> validOrigins, long hostDeadline)
+            throws DeployException, InterruptedException {
+        log("Deploying " + target.getDisplayName());
+        boolean found = false;
+        boolean skipped = false;
+        DeployEvent event = createEvent(target);
+        DeployMetrics metrics = event.getMetrics();
+        DeployWatchdog watchdog = startWatchdog(target, hostDeadline);
+        if (watchdog.isTimedOut()) {
+            DeployListener.notifyFailure(set, target, event);
+            throw new DeployException(watchdog.getMessage());
+        }
+        try {
+            DeploySource source = target.getArtifact();
+            if (source == null) {
+                throw new DeploySourceNotFoundException(null,
+                        "Undefined source for " + target.getDisplayName());
+            }
+            DeployedApplicationLocation location = null;
+            findSource:
+            for (DeploySourceOrigin origin : validOrigins) {
+                if (source.getDescriptor().isSupported(origin)) {
+                    switch (origin) {
+                        case WORKSPACE: {
+                            FilePath workspace = build.getWorkspace();
+                            if (workspace != null) {
+                                long start = System.nanoTime();
+                                FilePath applicationFile = source.getApplicationFile(workspace);
+                                metrics.recordSince(DeployMetrics.Phase.RESOLVE, start);
                                 if (applicationFile != null) {
                                     found = true;
+                                    start = System.nanoTime();
                                     validate(applicationFile);
-                                    log("  Resolved from archived artifacts as " + applicationFile);
-                                    location = process(applicationFile, target);
-                                    DeployListener.notifySuccess(set, target, event);
+                                    metrics.recordSince(DeployMetrics.Phase.VALIDATE, start);
+                                    log("  Resolved from workspace as " + applicationFile);
+                                    location = skipUnchanged ? findUnchanged(applicationFile, target, metrics) : null;
+                                    skipped = location != null;
+                                    if (!skipped) {
+                                        location = process(applicationFile, target, event);
+                                    }
                                     break findSource;
                                 }
                             }
-                            break;
-                            default:
-                                DeployListener.notifyFailure(set, target, event);
-                                throw new UnsupportedOperationException(
-                                        "Unknown DeploySourceOrigin instance: " + origin);
                         }
-                    }
-                }
-                if (!found) {
-                    throw new DeploySourceNotFoundException(source,
-                            "Cannot find source for " + target.getDisplayName());
-                }
-                if (location != null) {
-                    boolean haveAction = false;
-                    for (DeployedApplicationAction action : build.getActions(DeployedApplicationAction.class)) {
-                        if (action.getLocation().equals(location)) {
-                            haveAction = true;
-                            break;
+                        break;
+                        case RUN: {
+                            long start = System.nanoTime();
+                            File applicationFile = source.getApplicationFile(build);
+                            metrics.recordSince(DeployMetrics.Phase.RESOLVE, start);
+                            if (applicationFile != null) {
+                                found = true;
+                                start = System.nanoTime();
+                                validate(applicationFile);
+                                metrics.recordSince(DeployMetrics.Phase.VALIDATE, start);
+                                log("  Resolved from archived artifacts as " + applicationFile);
+                                location = skipUnchanged ? findUnchanged(applicationFile, target, metrics) : null;
+                                skipped = location != null;
+                                if (!skipped) {
+                                    location = process(applicationFile, target, event);
+                                }
+                                break findSource;
+                            }
                         }
-                    }
-                    if (!haveAction) {
-                        build.addAction(new DeployedApplicationAction<DeployedApplicationLocation>(location));
+                        break;
+                        default:
+                            DeployListener.notifyFailure(set, target, event);
+                            throw new UnsupportedOperationException(
+                                    "Unknown DeploySourceOrigin instance: " + origin);
                     }
                 }
-            } catch (RuntimeException e) {
-                DeployListener.notifyFailure(set, target, event);
-                throw e;
-            } catch (DeployException e) {
-                DeployListener.notifyFailure(set, target, event);
-                throw e;
             }
+            if (!found) {
+                throw new DeploySourceNotFoundException(source,
+                        "Cannot find source for " + target.getDisplayName());
+            }
+            if (location != null) {
+                long start = System.nanoTime();
+                addDeployedApplicationAction(location);
+                metrics.recordSince(DeployMetrics.Phase.RECORD_ACTION, start);
+            }
+            // notify once every phase has been timed so that listeners see the complete metrics
+            if (skipped) {
+                DeployListener.notifySkipped(set, target, event);
+            } else {
+                DeployListener.notifySuccess(set, target, event);
+            }
+            return location;
+        } catch (RuntimeException e) {
+            DeployListener.notifyFailure(set, target, event);
+            if (watchdog.finish()) {
+                throw new DeployException(watchdog.getMessage(), e);
+            }
+            throw e;
+        } catch (DeployException e) {
+            DeployListener.notifyFailure(set, target, event);
+            if (watchdog.finish()) {
+                throw new DeployException(watchdog.getMessage(), e);
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            DeployListener.notifyFailure(set, target, event);
+            // an interrupt that the watchdog did not deliver is an abort and must be propagated as such
+            if (watchdog.finish() && watchdog.isInterruptDelivered()) {
+                throw new DeployException(watchdog.getMessage(), e);
+            }
+            throw e;
+        } finally {
+            watchdog.finish();
+            log("  Timings for " + target.getDisplayName() + ": " + metrics.toSummary());
+        }
+    }
+
+    /**
+     * Starts the watchdog that interrupts the deployment of a target when the earlier of the target and host deadlines
+     * expires.
+     *
+     * @param target       the target.
+     * @param hostDeadline the {@link System#nanoTime()} by which all targets must be deployed or {@link Long#MAX_VALUE}
+     *                     for no deadline.
+     * @return the watchdog.
+     */
+    private DeployWatchdog startWatchdog(T target, long hostDeadline) {
+        long timeout = targetTimeout > 0 ? TimeUnit.MILLISECONDS.toNanos(targetTimeout) : Long.MAX_VALUE;
+        if (hostDeadline != Long.MAX_VALUE && hostDeadline - System.nanoTime() < timeout) {
+            return DeployWatchdog.start(hostDeadline - System.nanoTime(),
+                    "Deployment to " + set.getDisplayName() + " timed out after " + hostTimeout + "ms");
+        }
+        return DeployWatchdog.start(timeout,
+                "Deployment of " + target.getDisplayName() + " timed out after " + targetTimeout + "ms");
+    }
+
+    /**
+     * Checks whether the application file is already the latest deployment to the target's location.
+     *
+     * @param applicationFile the application file in the workspace.
+     * @param target          the target.
+     * @param metrics         the metrics to record the time spent computing the digest against.
+     * @return the location the application file is already deployed to or {@code null} if it needs to be deployed.
+     * @throws InterruptedException if interrupted while computing the digest.
+     */
+    @CheckForNull
+    private DeployedApplicationLocation findUnchanged(FilePath applicationFile, T target, DeployMetrics metrics)
+            throws InterruptedException {
+        DeployedApplicationLocation location = getExpectedLocation(target);
+        if (location == null) {
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            String md5sum = applicationFile.act(new DigestCallable(getNodeRoot(applicationFile)));
+            metrics.recordSince(DeployMetrics.Phase.DIGEST, start);
+            return findUnchanged(md5sum, location);
+        } catch (IOException e) {
+            log("  Could not compute digest of " + applicationFile + ", deploying anyway: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the application file is already the latest deployment to the target's location.
+     *
+     * @param applicationFile the archived application file.
+     * @param target          the target.
+     * @param metrics         the metrics to record the time spent computing the digest against.
+     * @return the location the application file is already deployed to or {@code null} if it needs to be deployed.
+     */
+    @CheckForNull
+    private DeployedApplicationLocation findUnchanged(File applicationFile, T target, DeployMetrics metrics) {
+        DeployedApplicationLocation location = getExpectedLocation(target);
+        if (location == null || !applicationFile.isFile()) {
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            String digest = getRecordedDigest(applicationFile);
+            if (digest == null) {
+                digest = DigestCache.get(toFile(getNodeRoot(null))).getDigest(applicationFile);
+            }
+            metrics.recordSince(DeployMetrics.Phase.DIGEST, start);
+            return findUnchanged(digest, location);
+        } catch (IOException e) {
+            log("  Could not compute digest of " + applicationFile + ", deploying anyway: " + e.getMessage());
+        }
+        return null;
+    }
+
+    @CheckForNull
+    private DeployedApplicationLocation findUnchanged(@CheckForNull String md5sum,
+                                                      @NonNull DeployedApplicationLocation location)
+            throws IOException {
+        if (md5sum == null || !md5sum.equals(DeployedApplicationHistory.get().getLatestDigest(location))) {
+            return null;
+        }
+        Jenkins j = Jenkins.getInstance();
+        Fingerprint fingerprint = j == null ? null : j._getFingerprint(md5sum);
+        if (fingerprint == null) {
+            return null;
+        }
+        for (FingerprintFacet facet : fingerprint.getFacets()) {
+            if (facet instanceof DeployedApplicationFingerprintFacet
+                    && location.equals(((DeployedApplicationFingerprintFacet) facet).getLocation())) {
+                log("  Skipping deployment as " + fingerprint.getDisplayName() + " is already deployed to "
+                        + location.getLocationURL());
+                return location;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates the deploy actor for a target, supplying a {@link DeltaDeployActor} with the manifest of the previous
+     * deployment to the target's location.
+     *
+     * @param target the target.
+     * @return the deploy actor.
+     * @throws DeployException if the actor could not be created.
+     */
+    private FilePath.FileCallable<DeployedApplicationLocation> newDeltaAwareDeployActor(T target)
+            throws DeployException {
+        FilePath.FileCallable<DeployedApplicationLocation> actor = newDeployActor(target);
+        if (actor instanceof DeltaDeployActor) {
+            DeployedApplicationLocation location = getExpectedLocation(target);
+            DirectoryManifest previous = location == null ? null : DirectoryManifestStore.get().load(location);
+            ((DeltaDeployActor<DeployedApplicationLocation>) actor).setPrevious(previous);
+        }
+        return actor;
+    }
+
+    /**
+     * Returns the location that the target will be deployed to, if that can be determined without deploying. Engines
+     * that implement this allow unchanged deployments to be skipped, the returned location must be equal to the one
+     * returned by the actor from {@link #newDeployActor(DeployTarget)}.
+     *
+     * @param target the target.
+     * @return the location that the target will be deployed to or {@code null} if that can only be determined by
+     *         deploying.
+     */
+    @CheckForNull
+    protected DeployedApplicationLocation getExpectedLocation(T target) {
+        return null;
+    }
+
+    /**
+     * Records the location on the build unless the build already has a record of that location.
+     *
+     * @param location the location.
+     */
+    private void addDeployedApplicationAction(DeployedApplicationLocation location) {
+        // targets may complete concurrently, so the check and add must be atomic with respect to the build
+        synchronized (build) {
+            for (DeployedApplicationAction action : build.getActions(DeployedApplicationAction.class)) {
+                if (action.getLocation().equals(location)) {
+                    return;
+                }
+            }
+            build.addAction(new DeployedApplicationAction<DeployedApplicationLocation>(location));
         }
-        return true;
     }
 
     public abstract void validate(FilePath applicationFile) throws DeployException;
@@ -179,9 +661,46 @@ public abstract class Engine<S extends DeployHost<S, T>, T extends DeployTarget<
 
     @CheckForNull
     public DeployedApplicationLocation process(FilePath applicationFile, T target) throws DeployException {
+        return process(applicationFile, target, null);
+    }
+
+    /**
+     * Deploys the application file from the workspace to the target.
+     *
+     * @param applicationFile the application file.
+     * @param target          the target.
+     * @param event           the event to record metrics against or {@code null}.
+     * @return the location the application was deployed to.
+     * @throws DeployException if the deployment failed.
+     */
+    @CheckForNull
+    public DeployedApplicationLocation process(FilePath applicationFile, T target, @CheckForNull DeployEvent event)
+            throws DeployException {
+        DeployMetrics metrics = event == null ? new DeployMetrics() : event.getMetrics();
         try {
-            FingerprintingWrapper actor = new FingerprintingWrapper(newDeployActor(target));
-            return this.addToFacets(applicationFile.act(actor));
+            Map.Entry<String, DeployedApplicationLocation> result;
+            while (true) {
+                int attempt = metrics.recordAttempt();
+                long start = System.nanoTime();
+                try {
+                    FingerprintingWrapper actor = new FingerprintingWrapper(newDeltaAwareDeployActor(target), null,
+                            getNodeRoot(applicationFile));
+                    result = applicationFile.act(actor);
+                    recordTransfer(metrics, start, result);
+                    break;
+                } catch (Throwable t) {
+                    metrics.recordSince(DeployMetrics.Phase.TRANSFER, start);
+                    if (!retry(target, attempt, t)) {
+                        throw t;
+                    }
+                }
+            }
+            long start = System.nanoTime();
+            try {
+                return this.addToFacets(result);
+            } finally {
+                metrics.recordSince(DeployMetrics.Phase.RECORD_FACETS, start);
+            }
         } catch (DeployException e) {
             throw e;
         } catch (InterruptedException e) {
@@ -193,9 +712,53 @@ public abstract class Engine<S extends DeployHost<S, T>, T extends DeployTarget<
 
     @CheckForNull
     public DeployedApplicationLocation process(File applicationFile, T target) throws DeployException {
+        return process(applicationFile, target, null);
+    }
+
+    /**
+     * Deploys the archived application file to the target.
+     *
+     * @param applicationFile the application file.
+     * @param target          the target.
+     * @param event           the event to record metrics against or {@code null}.
+     * @return the location the application was deployed to.
+     * @throws DeployException if the deployment failed.
+     */
+    @CheckForNull
+    public DeployedApplicationLocation process(File applicationFile, T target, @CheckForNull DeployEvent event)
+            throws DeployException {
+        DeployMetrics metrics = event == null ? new DeployMetrics() : event.getMetrics();
         try {
-            FingerprintingWrapper actor = new FingerprintingWrapper(newDeployActor(target));
-            return this.addToFacets(actor.invoke(applicationFile, launcher.getChannel()));
+            long start = System.nanoTime();
+            String recordedDigest = getRecordedDigest(applicationFile);
+            if (recordedDigest != null) {
+                log("  Using digest " + recordedDigest + " from the build's fingerprint records");
+            }
+            metrics.recordSince(DeployMetrics.Phase.DIGEST, start);
+            Map.Entry<String, DeployedApplicationLocation> result;
+            while (true) {
+                int attempt = metrics.recordAttempt();
+                start = System.nanoTime();
+                try {
+                    FingerprintingWrapper actor =
+                            new FingerprintingWrapper(newDeltaAwareDeployActor(target), recordedDigest,
+                                    getNodeRoot(null));
+                    result = actor.invoke(applicationFile, launcher.getChannel());
+                    recordTransfer(metrics, start, result);
+                    break;
+                } catch (Throwable t) {
+                    metrics.recordSince(DeployMetrics.Phase.TRANSFER, start);
+                    if (!retry(target, attempt, t)) {
+                        throw t;
+                    }
+                }
+            }
+            start = System.nanoTime();
+            try {
+                return this.addToFacets(result);
+            } finally {
+                metrics.recordSince(DeployMetrics.Phase.RECORD_FACETS, start);
+            }
         } catch (DeployException e) {
             throw e;
         } catch (InterruptedException e) {
@@ -205,10 +768,100 @@ public abstract class Engine<S extends DeployHost<S, T>, T extends DeployTarget<
         }
     }
 
+    /**
+     * Decides whether a failed attempt to deploy a target should be retried and, if so, waits before the next attempt
+     * as directed by the {@link RetryPolicy}.
+     *
+     * @param target  the target.
+     * @param attempt the number of the attempt that failed, starting from {@code 1}.
+     * @param failure the failure.
+     * @return {@code true} if another attempt should be made.
+     * @throws InterruptedException if interrupted while waiting to retry.
+     */
+    private boolean retry(T target, int attempt, Throwable failure) throws InterruptedException {
+        if (!retryPolicy.shouldRetry(attempt, failure)) {
+            if (attempt > 1) {
+                log("  Attempt " + attempt + " of " + retryPolicy.getMaxAttempts() + " to deploy "
+                        + target.getDisplayName() + " failed, giving up: " + failure);
+            }
+            return false;
+        }
+        long delay = retryPolicy.getDelayMillis(attempt, RANDOM);
+        log("  Attempt " + attempt + " of " + retryPolicy.getMaxAttempts() + " to deploy " + target.getDisplayName()
+                + " failed, retrying in " + delay + "ms: " + failure);
+        Thread.sleep(delay);
+        return true;
+    }
+
+    /**
+     * Splits the time spent by a {@link FingerprintingWrapper} between the transfer and the digest.
+     *
+     * @param metrics    the metrics to record against.
+     * @param startNanos the {@link System#nanoTime()} when the wrapper was created.
+     * @param result     the result of the wrapper.
+     */
+    private static void recordTransfer(DeployMetrics metrics, long startNanos,
+                                       Map.Entry<String, DeployedApplicationLocation> result) {
+        long elapsed = System.nanoTime() - startNanos;
+        long digestNanos = result instanceof TransferResult ? ((TransferResult) result).getDigestNanos() : 0L;
+        digestNanos = Math.min(digestNanos, elapsed);
+        metrics.record(DeployMetrics.Phase.DIGEST, digestNanos);
+        metrics.record(DeployMetrics.Phase.TRANSFER, elapsed - digestNanos);
+    }
+
+    /**
+     * Returns the digest that was recorded for an archived artifact when the build fingerprinted it.
+     *
+     * @param applicationFile the archived artifact.
+     * @return the MD5 digest recorded by the build's {@link Fingerprinter.FingerprintAction} or {@code null} if the
+     *         file is not an archived artifact of the build or was not fingerprinted.
+     */
+    @CheckForNull
+    protected String getRecordedDigest(@NonNull File applicationFile) {
+        Fingerprinter.FingerprintAction action = build.getAction(Fingerprinter.FingerprintAction.class);
+        if (action == null || !applicationFile.isFile()) {
+            return null;
+        }
+        String artifactsDir = build.getArtifactsDir().getAbsolutePath() + File.separator;
+        String path = applicationFile.getAbsolutePath();
+        if (!path.startsWith(artifactsDir)) {
+            return null;
+        }
+        return action.getRecords().get(path.substring(artifactsDir.length()).replace(File.separatorChar, '/'));
+    }
+
     private DeployedApplicationLocation addToFacets(Map.Entry<String, DeployedApplicationLocation> pair) throws IOException {
         DeployedApplicationLocation location = pair.getValue();
         String md5sum = pair.getKey();
+        if (pair instanceof TransferResult) {
+            TransferResult result = (TransferResult) pair;
+            switch (result.getDigestSource()) {
+                case CACHE:
+                case COMPUTED:
+                    log("  Digest " + (result.getDigestSource() == TransferResult.DigestSource.CACHE
+                            ? "found in"
+                            : "computed and added to") + " node digest cache (hits: " + result.getCacheHits()
+                            + ", misses: " + result.getCacheMisses() + ")");
+                    break;
+                default:
+                    break;
+            }
+            CompressionStats compressionStats = result.getCompressionStats();
+            if (compressionStats != null) {
+                log("  Transferred with " + compressionStats.toSummary());
+            }
+        }
 
+        if (location != null) {
+            // only skip-unchanged deployments need the digest, any other deployment just makes it stale
+            DeployedApplicationHistory.get().record(location, !skipUnchanged || NO_MD5.equals(md5sum) ? null : md5sum);
+            DirectoryManifest manifest = pair instanceof TransferResult ? ((TransferResult) pair).getManifest() : null;
+            if (manifest != null) {
+                log("  Recorded manifest of " + manifest.size() + " files deployed to " + location.getLocationURL());
+            }
+            // any other deployment to the location invalidates the manifest of a previous directory deployment
+            DirectoryManifestStore.get().save(location, manifest);
+        }
         if (!NO_MD5.equals(md5sum)) {
             Jenkins j = Jenkins.getInstance();
             if (j == null) {
@@ -217,12 +870,20 @@ public abstract class Engine<S extends DeployHost<S, T>, T extends DeployTarget<
 
             Fingerprint fingerprint = j._getFingerprint(md5sum);
             if (fingerprint != null) {
-                fingerprint.getFacets()
-                        .add(new DeployedApplicationFingerprintFacet<DeployedApplicationLocation>(fingerprint,
-                                System.currentTimeMillis(),
-                                location));
-                fingerprint.save();
-                listener.getLogger().println("[cloudbees-deployer] Recorded deployment in fingerprint record");
+                // adding to the facets would save the fingerprint, defer that to the writer so we do not block
+                BulkChange bc = new BulkChange(fingerprint);
+                try {
+                    fingerprint.getFacets()
+                            .add(new DeployedApplicationFingerprintFacet<DeployedApplicationLocation>(fingerprint,
+                                    System.currentTimeMillis(),
+                                    location));
+                } finally {
+                    bc.abort();
+                }
+                RecordWriter writer = RecordWriter.get();
+                writer.save(fingerprint);
+                listener.getLogger().println("[cloudbees-deployer] Recorded deployment in fingerprint record ("
+                        + writer.getQueueDepth() + " fingerprint records waiting to be saved)");
             } else {
                 listener.getLogger()
                         .println("[cloudbees-deployer] Deployed artifact does not have a fingerprint record");
@@ -261,26 +922,232 @@ public abstract class Engine<S extends DeployHost<S, T>, T extends DeployTarget<
         throw new DeployException("Deployment hosts of type " + configuration.getClass() + " are unsupported");
     }
 
+    /**
+     * Returns the root directory of the node that holds a file, under which the node keeps its {@link DigestCache}.
+     *
+     * @param file the file or {@code null} for a file on the master.
+     * @return the remote path of the root directory of the node or {@code null} if the node is unknown.
+     */
+    @CheckForNull
+    private static String getNodeRoot(@CheckForNull FilePath file) {
+        Jenkins j = Jenkins.getInstance();
+        if (j == null) {
+            return null;
+        }
+        if (file == null) {
+            return j.getRootDir().getAbsolutePath();
+        }
+        Computer computer = file.toComputer();
+        Node node = computer == null ? null : computer.getNode();
+        FilePath root = node == null ? null : node.getRootPath();
+        return root == null ? null : root.getRemote();
+    }
+
+    @CheckForNull
+    private static File toFile(@CheckForNull String path) {
+        return path == null ? null : new File(path);
+    }
+
+    /**
+     * Computes the digest of a file on the node that holds it.
+     */
+    private static class DigestCallable extends MasterToSlaveFileCallable<String> {
+        @CheckForNull
+        private final String nodeRoot;
+
+        DigestCallable(@CheckForNull String nodeRoot) {
+            this.nodeRoot = nodeRoot;
+        }
+
+        public String invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+            return f.isFile() ? DigestCache.get(toFile(nodeRoot)).getDigest(f) : null;
+        }
+    }
+
+    /**
+     * The future of a single target that interrupts the deployment of the target when cancelled. As a cancelled
+     * future completes straight away, the future also tracks when the deployment has actually finished.
+     */
+    private static class TargetFuture extends CompletableFuture<DeployedApplicationLocation> {
+        /**
+         * The task deploying the target.
+         */
+        private volatile Future<?> task;
+
+        /**
+         * Whether the deployment has started or finished.
+         */
+        private final AtomicReference<State> state = new AtomicReference<State>(State.PENDING);
+
+        /**
+         * Released when the deployment has finished or will never start.
+         */
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        /**
+         * Called once when the deployment has finished or will never start.
+         */
+        private final Runnable whenFinished;
+
+        TargetFuture(Runnable whenFinished) {
+            this.whenFinished = whenFinished;
+        }
+
+        void setTask(Future<?> task) {
+            this.task = task;
+            if (isCancelled()) {
+                task.cancel(true);
+            }
+        }
+
+        /**
+         * Marks the deployment as started.
+         *
+         * @return {@code false} if the future was cancelled before the deployment started.
+         */
+        boolean start() {
+            return state.compareAndSet(State.PENDING, State.RUNNING);
+        }
+
+        /**
+         * Marks the deployment as finished.
+         */
+        void finish() {
+            if (state.getAndSet(State.FINISHED) != State.FINISHED) {
+                finished.countDown();
+                whenFinished.run();
+            }
+        }
+
+        /**
+         * Completes the future without interrupting the task as the task is skipping the target.
+         */
+        void skip() {
+            super.cancel(false);
+        }
+
+        /**
+         * Waits for the deployment to finish, ignoring interrupts as this is only used while propagating one.
+         */
+        void awaitFinished() {
+            while (true) {
+                try {
+                    finished.await();
+                    return;
+                } catch (InterruptedException e) {
+                    // keep waiting
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                if (state.compareAndSet(State.PENDING, State.FINISHED)) {
+                    // the deployment will never start
+                    finished.countDown();
+                    whenFinished.run();
+                }
+                Future<?> task = this.task;
+                if (task != null) {
+                    task.cancel(mayInterruptIfRunning);
+                }
+            }
+            return cancelled;
+        }
+
+        private enum State {
+            PENDING,
+            RUNNING,
+            FINISHED
+        }
+    }
+
     public static class FingerprintingWrapper extends MasterToSlaveFileCallable<Map.Entry<String, DeployedApplicationLocation>> {
         private final FilePath.FileCallable<DeployedApplicationLocation> delegate;
+        @CheckForNull
+        private final String recordedDigest;
+        @CheckForNull
+        private final String nodeRoot;
 
         public FingerprintingWrapper(FilePath.FileCallable<DeployedApplicationLocation> delegate) {
+            this(delegate, null);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param delegate       the actor that performs the deployment.
+         * @param recordedDigest the digest of the file if already known, in which case the file will not be hashed.
+         */
+        public FingerprintingWrapper(FilePath.FileCallable<DeployedApplicationLocation> delegate,
+                                     @CheckForNull String recordedDigest) {
+            this(delegate, recordedDigest, null);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param delegate       the actor that performs the deployment.
+         * @param recordedDigest the digest of the file if already known, in which case the file will not be hashed.
+         * @param nodeRoot       the root directory of the node that holds the file, where the {@link DigestCache} of
+         *                       the node is saved, or {@code null} to only cache digests in memory.
+         */
+        public FingerprintingWrapper(FilePath.FileCallable<DeployedApplicationLocation> delegate,
+                                     @CheckForNull String recordedDigest, @CheckForNull String nodeRoot) {
             this.delegate = delegate;
+            this.recordedDigest = recordedDigest;
+            this.nodeRoot = nodeRoot;
         }
 
         public Map.Entry<String, DeployedApplicationLocation> invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
-            DeployedApplicationLocation location = delegate.invoke(f, channel);
+            final DeployedApplicationLocation location;
+            String md5sum = null;
+            CompressionStats compressionStats = null;
+            if (delegate instanceof StreamingDeployActor) {
+                TransferContext context = new TransferContext(f);
+                location = ((StreamingDeployActor<DeployedApplicationLocation>) delegate).invoke(f, channel, context);
+                md5sum = context.getDigest();
+                compressionStats = context.getCompressionStats();
+            } else {
+                location = delegate.invoke(f, channel);
+            }
             if (f.isFile() && location != null) {
-                FileInputStream fis = new FileInputStream(f);
-                try {
-                    String md5sum = Util.getDigestOf(fis);
-                    return new AbstractMap.SimpleEntry<String, DeployedApplicationLocation>(md5sum, location);
-                } finally {
-                    fis.close();
+                DigestCache cache = DigestCache.get(toFile(nodeRoot));
+                TransferResult.DigestSource digestSource;
+                long digestNanos = 0L;
+                if (recordedDigest != null) {
+                    digestSource = TransferResult.DigestSource.RECORDED;
+                    md5sum = recordedDigest;
+                } else if (md5sum != null) {
+                    digestSource = TransferResult.DigestSource.TRANSFER;
+                    cache.put(f, md5sum);
+                } else {
+                    // the delegate did not read the whole file through the context, so we need to read it again
+                    // unless the file has been hashed before
+                    long start = System.nanoTime();
+                    DigestCache.Result digest = cache.resolve(f);
+                    digestNanos = System.nanoTime() - start;
+                    md5sum = digest.getDigest();
+                    digestSource = digest.isCached()
+                            ? TransferResult.DigestSource.CACHE
+                            : TransferResult.DigestSource.COMPUTED;
                 }
+                TransferResult result = new TransferResult(md5sum, location, digestSource, cache.getHitCount(),
+                        cache.getMissCount(), digestNanos);
+                result.setCompressionStats(compressionStats);
+                return result;
             }
 
-            return new AbstractMap.SimpleEntry<String, DeployedApplicationLocation>(NO_MD5, location);
+            TransferResult result = new TransferResult(NO_MD5, location, TransferResult.DigestSource.NONE, 0, 0);
+            if (delegate instanceof DeltaDeployActor && location != null) {
+                result.setManifest(((DeltaDeployActor<DeployedApplicationLocation>) delegate).getManifest());
+            }
+            return result;
         }
     }
 }
@@ -90,6 +90,45 @@ public class EngineConfiguration<S extends DeployHost<S, T>, T extends DeployTar
     @CheckForNull
     private final Set<DeploySourceOrigin> sources;
 
+    /**
+     * The maximum number of targets to deploy concurrently or {@code null} to use
+     * {@link DeployHost#getTargetConcurrency()}.
+     */
+    @CheckForNull
+    private final Integer targetConcurrency;
+
+    /**
+     * Whether to skip deploying artifacts that are already the latest deployment to the target's
+     * location, {@code null} is equivalent to {@code false}.
+     */
+    @CheckForNull
+    private final Boolean skipUnchanged;
+
+    /**
+     * The policy for retrying failed deployments to a target or {@code null} to not retry.
+     */
+    @CheckForNull
+    private final RetryPolicy retryPolicy;
+
+    /**
+     * The maximum time in milliseconds to spend deploying each target or {@code null} for no limit.
+     */
+    @CheckForNull
+    private final Long targetTimeout;
+
+    /**
+     * The maximum time in milliseconds to spend deploying all the targets or {@code null} for no limit.
+     */
+    @CheckForNull
+    private final Long hostTimeout;
+
+    /**
+     * Whether to share sessions with other engines through the {@link SessionCache}, {@code null} is
+     * equivalent to {@code false}.
+     */
+    @CheckForNull
+    private final Boolean sessionCaching;
+
     public EngineConfiguration(@NonNull S configuration) {
         configuration.getClass(); // throw NPE if null
         this.configuration = configuration;
@@ -99,12 +138,24 @@ public class EngineConfiguration<S extends DeployHost<S, T>, T extends DeployTar
         launcher = null;
         listener = null;
         sources = null;
+        targetConcurrency = null;
+        skipUnchanged = null;
+        retryPolicy = null;
+        targetTimeout = null;
+        hostTimeout = null;
+        sessionCaching = null;
     }
 
     private EngineConfiguration(@CheckForNull AbstractBuild<?, ?> build, @CheckForNull Item deployScope,
                                 @CheckForNull List<Authentication> deployAuthentications, @NonNull S configuration,
                                 @CheckForNull Launcher launcher, @CheckForNull BuildListener listener,
-                                @CheckForNull Set<DeploySourceOrigin> sources) {
+                                @CheckForNull Set<DeploySourceOrigin> sources,
+                                @CheckForNull Integer targetConcurrency,
+                                @CheckForNull Boolean skipUnchanged,
+                                @CheckForNull RetryPolicy retryPolicy,
+                                @CheckForNull Long targetTimeout,
+                                @CheckForNull Long hostTimeout,
+                                @CheckForNull Boolean sessionCaching) {
         configuration.getClass(); // throw NPE if null
         this.build = build;
         this.deployScope = deployScope;
@@ -116,6 +167,12 @@ public class EngineConfiguration<S extends DeployHost<S, T>, T extends DeployTar
         this.listener = listener;
         this.sources =
                 sources == null ? null : Collections.unmodifiableSet(new LinkedHashSet<DeploySourceOrigin>(sources));
+        this.targetConcurrency = targetConcurrency;
+        this.skipUnchanged = skipUnchanged;
+        this.retryPolicy = retryPolicy;
+        this.targetTimeout = targetTimeout;
+        this.hostTimeout = hostTimeout;
+        this.sessionCaching = sessionCaching;
     }
 
     @CheckForNull
@@ -126,8 +183,7 @@ public class EngineConfiguration<S extends DeployHost<S, T>, T extends DeployTar
     @NonNull
     public EngineConfiguration<S, T> withBuild(@CheckForNull AbstractBuild<?, ?> build) {
         return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
-                listener,
-                sources);
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
     }
 
     @NonNull
@@ -144,8 +200,7 @@ public class EngineConfiguration<S extends DeployHost<S, T>, T extends DeployTar
     public EngineConfiguration<S, T> withDeployAuthentications(
             @CheckForNull List<Authentication> deployAuthentications) {
         return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
-                listener,
-                sources);
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
     }
 
     @CheckForNull
@@ -156,8 +211,7 @@ public class EngineConfiguration<S extends DeployHost<S, T>, T extends DeployTar
     @NonNull
     public EngineConfiguration<S, T> withDeployScope(@CheckForNull Item deployScope) {
         return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
-                listener,
-                sources);
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
     }
 
     @CheckForNull
@@ -168,8 +222,7 @@ public class EngineConfiguration<S extends DeployHost<S, T>, T extends DeployTar
     @NonNull
     public EngineConfiguration<S, T> withLauncher(@CheckForNull Launcher launcher) {
         return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
-                listener,
-                sources);
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
     }
 
     @CheckForNull
@@ -180,8 +233,7 @@ public class EngineConfiguration<S extends DeployHost<S, T>, T extends DeployTar
     @NonNull
     public EngineConfiguration<S, T> withListener(@CheckForNull BuildListener listener) {
         return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
-                listener,
-                sources);
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
     }
 
     @CheckForNull
@@ -192,7 +244,72 @@ public class EngineConfiguration<S extends DeployHost<S, T>, T extends DeployTar
     @NonNull
     public EngineConfiguration<S, T> withSources(@CheckForNull Set<DeploySourceOrigin> sources) {
         return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
-                listener,
-                sources);
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
+    }
+
+    @CheckForNull
+    public Integer getTargetConcurrency() {
+        return targetConcurrency;
+    }
+
+    @NonNull
+    public EngineConfiguration<S, T> withTargetConcurrency(@CheckForNull Integer targetConcurrency) {
+        return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
+    }
+
+    @CheckForNull
+    public Boolean getSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    @NonNull
+    public EngineConfiguration<S, T> withSkipUnchanged(@CheckForNull Boolean skipUnchanged) {
+        return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
+    }
+
+    @CheckForNull
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    @NonNull
+    public EngineConfiguration<S, T> withRetryPolicy(@CheckForNull RetryPolicy retryPolicy) {
+        return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
+    }
+
+    @CheckForNull
+    public Long getTargetTimeout() {
+        return targetTimeout;
+    }
+
+    @NonNull
+    public EngineConfiguration<S, T> withTargetTimeout(@CheckForNull Long targetTimeout) {
+        return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
+    }
+
+    @CheckForNull
+    public Long getHostTimeout() {
+        return hostTimeout;
+    }
+
+    @NonNull
+    public EngineConfiguration<S, T> withHostTimeout(@CheckForNull Long hostTimeout) {
+        return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
+    }
+
+    @CheckForNull
+    public Boolean getSessionCaching() {
+        return sessionCaching;
+    }
+
+    @NonNull
+    public EngineConfiguration<S, T> withSessionCaching(@CheckForNull Boolean sessionCaching) {
+        return new EngineConfiguration<S, T>(build, deployScope, deployAuthentications, configuration, launcher,
+                listener, sources, targetConcurrency, skipUnchanged, retryPolicy, targetTimeout, hostTimeout, sessionCaching);
     }
 }
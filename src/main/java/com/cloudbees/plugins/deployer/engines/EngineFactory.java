@@ -43,6 +43,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author stephenc
@@ -112,6 +113,85 @@ public abstract class EngineFactory<S extends DeployHost<S, T>, T extends Deploy
         return this;
     }
 
+    /**
+     * Sets the maximum number of targets to deploy concurrently, overriding
+     * {@link DeployHost#getTargetConcurrency()}.
+     *
+     * @param targetConcurrency the maximum number of targets to deploy concurrently.
+     * @return {@code this} for method chaining.
+     */
+    @NonNull
+    public EngineFactory<S, T> withTargetConcurrency(int targetConcurrency) {
+        configuration = configuration.withTargetConcurrency(targetConcurrency);
+        return this;
+    }
+
+    /**
+     * Sets whether deployments of artifacts that are already the latest deployment to the target location should be
+     * skipped. Only engines that implement {@link Engine#getExpectedLocation(DeployTarget)} can skip deployments.
+     *
+     * @param skipUnchanged {@code true} to skip unchanged deployments.
+     * @return {@code this} for method chaining.
+     */
+    @NonNull
+    public EngineFactory<S, T> withSkipUnchanged(boolean skipUnchanged) {
+        configuration = configuration.withSkipUnchanged(skipUnchanged);
+        return this;
+    }
+
+    /**
+     * Sets the policy for retrying deployments to a target that fail with a transient error.
+     *
+     * @param retryPolicy the retry policy.
+     * @return {@code this} for method chaining.
+     */
+    @NonNull
+    public EngineFactory<S, T> withRetryPolicy(@NonNull RetryPolicy retryPolicy) {
+        configuration = configuration.withRetryPolicy(retryPolicy);
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to spend deploying each target, after which the deployment of the target is interrupted
+     * and reported as failed.
+     *
+     * @param timeout the maximum time to spend deploying each target.
+     * @param unit    the unit of the timeout.
+     * @return {@code this} for method chaining.
+     */
+    @NonNull
+    public EngineFactory<S, T> withTargetTimeout(long timeout, @NonNull TimeUnit unit) {
+        configuration = configuration.withTargetTimeout(unit.toMillis(timeout));
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to spend deploying all the targets of the host, after which any deployment still in
+     * progress is interrupted and reported as failed.
+     *
+     * @param timeout the maximum time to spend deploying all the targets.
+     * @param unit    the unit of the timeout.
+     * @return {@code this} for method chaining.
+     */
+    @NonNull
+    public EngineFactory<S, T> withHostTimeout(long timeout, @NonNull TimeUnit unit) {
+        configuration = configuration.withHostTimeout(unit.toMillis(timeout));
+        return this;
+    }
+
+    /**
+     * Sets whether the engine may reuse a session opened by an earlier engine for the same host and authentications.
+     * Only engines that implement {@link Engine#getSessionKey()} can share sessions.
+     *
+     * @param sessionCaching {@code true} to share sessions through the {@link SessionCache}.
+     * @return {@code this} for method chaining.
+     */
+    @NonNull
+    public EngineFactory<S, T> withSessionCaching(boolean sessionCaching) {
+        configuration = configuration.withSessionCaching(sessionCaching);
+        return this;
+    }
+
     @NonNull
     public abstract Engine<S, T> build() throws DeployException;
 
@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link ChunkedUpload} to an HTTP endpoint that implements the resumable upload convention: each chunk is sent as
+ * a {@code PUT} with a {@code Content-Range} of {@code bytes first-last/length}; the receiver replies
+ * {@code 308 Resume Incomplete} with a {@code Range} of {@code bytes=0-last} covering what it holds until the whole
+ * file has been received, when it replies with a {@code 2xx}. Sending a {@code Content-Range} of
+ * {@code bytes *&#47;length} with no body asks the receiver how much it holds. Engines can override
+ * {@link #configure(HttpURLConnection)} to add authentication headers.
+ */
+public class HttpChunkedUpload extends ChunkedUpload {
+
+    /**
+     * The status the receiver replies with while the upload is incomplete.
+     */
+    public static final int RESUME_INCOMPLETE = 308;
+
+    private static final Pattern RANGE = Pattern.compile("bytes=0-(\\d+)");
+
+    /**
+     * The upload URL.
+     */
+    @NonNull
+    private final URL url;
+
+    /**
+     * Constructor.
+     *
+     * @param url       the upload URL.
+     * @param file      the file to upload.
+     * @param chunkSize the maximum number of bytes to send in each chunk.
+     */
+    public HttpChunkedUpload(@NonNull URL url, @NonNull File file, int chunkSize) {
+        super(file, chunkSize);
+        url.getClass(); // throw NPE if null
+        this.url = url;
+    }
+
+    @NonNull
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Configures each connection before it is used, e.g. to add authentication headers or timeouts.
+     *
+     * @param connection the connection.
+     * @throws IOException if the connection could not be configured.
+     */
+    protected void configure(@NonNull HttpURLConnection connection) throws IOException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long queryAcknowledged() throws IOException {
+        HttpURLConnection connection = open("bytes */" + getLength(), 0);
+        try {
+            int status = connection.getResponseCode();
+            if (status == RESUME_INCOMPLETE) {
+                return parseRange(connection.getHeaderField("Range"));
+            }
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                return 0L;
+            }
+            if (status / 100 == 2) {
+                return getLength();
+            }
+            throw new IOException("Unexpected HTTP status " + status + " querying upload " + url);
+        } finally {
+            drain(connection);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long sendChunk(@NonNull byte[] buffer, int len, long offset) throws IOException {
+        HttpURLConnection connection = open(len == 0
+                ? "bytes */" + getLength()
+                : "bytes " + offset + "-" + (offset + len - 1) + "/" + getLength(), len);
+        try {
+            if (len > 0) {
+                OutputStream out = connection.getOutputStream();
+                try {
+                    out.write(buffer, 0, len);
+                } finally {
+                    out.close();
+                }
+            }
+            int status = connection.getResponseCode();
+            if (status == RESUME_INCOMPLETE) {
+                return parseRange(connection.getHeaderField("Range"));
+            }
+            if (status / 100 == 2) {
+                return offset + len;
+            }
+            throw new IOException("Unexpected HTTP status " + status + " uploading bytes " + offset + "-"
+                    + (offset + len - 1) + " of " + getLength() + " to " + url);
+        } finally {
+            drain(connection);
+        }
+    }
+
+    private HttpURLConnection open(String contentRange, int len) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("PUT");
+        // 308 means resume incomplete here, not a redirect
+        connection.setInstanceFollowRedirects(false);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(len);
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        connection.setRequestProperty("Content-Range", contentRange);
+        configure(connection);
+        return connection;
+    }
+
+    /**
+     * Parses the {@code Range} header of a {@code 308} reply.
+     *
+     * @param range the header value.
+     * @return the number of bytes the receiver holds.
+     */
+    static long parseRange(@CheckForNull String range) {
+        if (range == null) {
+            return 0L;
+        }
+        Matcher matcher = RANGE.matcher(range.trim());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) + 1 : 0L;
+    }
+
+    /**
+     * Reads and discards the reply so that the connection can be reused.
+     *
+     * @param connection the connection.
+     */
+    private static void drain(HttpURLConnection connection) {
+        try {
+            InputStream in = connection.getResponseCode() >= 400
+                    ? connection.getErrorStream()
+                    : connection.getInputStream();
+            if (in != null) {
+                try {
+                    byte[] buf = new byte[1024];
+                    while (in.read(buf) != -1) {
+                        // discard
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (IOException e) {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Copies an application file to a destination that is local to the node the deploy actor runs on, such as an NFS drop
+ * or the deploy directory of a local application server, without passing the bytes through the heap where
+ * possible. The file is written to a temporary sibling of the destination and then renamed over the destination
+ * so that a watching application server never sees a partial file.
+ */
+public final class LocalTransfer {
+
+    private static final Logger LOGGER = Logger.getLogger(LocalTransfer.class.getName());
+
+    /**
+     * How a file was transferred.
+     */
+    public enum Method {
+        /**
+         * The destination was hard linked to the source.
+         */
+        LINK,
+        /**
+         * The bytes were moved by {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+         */
+        CHANNEL,
+        /**
+         * The bytes were copied through a heap buffer.
+         */
+        STREAM
+    }
+
+    private LocalTransfer() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Copies a file, never linking.
+     *
+     * @param source the file to copy.
+     * @param dest   the destination, replaced if it exists.
+     * @return how the file was transferred.
+     * @throws IOException if the file could not be copied.
+     */
+    @NonNull
+    public static Method transfer(@NonNull File source, @NonNull File dest) throws IOException {
+        return transfer(source, dest, false);
+    }
+
+    /**
+     * Copies a file. A hard link shares the content with the source, so only allow linking when nothing will
+     * rewrite the source in place after the deployment, as an in place rewrite would change the deployed file too.
+     *
+     * @param source    the file to copy.
+     * @param dest      the destination, replaced if it exists.
+     * @param allowLink {@code true} to try a hard link first when source and destination are on the same file system.
+     * @return how the file was transferred.
+     * @throws IOException if the file could not be copied.
+     */
+    @NonNull
+    public static Method transfer(@NonNull File source, @NonNull File dest, boolean allowLink) throws IOException {
+        source.getClass(); // throw NPE if null
+        dest.getClass(); // throw NPE if null
+        if (!source.isFile()) {
+            throw new IOException("Not a file: " + source);
+        }
+        File dir = dest.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+        File tmp = new File(dir, "." + dest.getName() + ".tmp-" + Long.toHexString(System.nanoTime()));
+        try {
+            Method method = null;
+            if (allowLink) {
+                try {
+                    Files.createLink(tmp.toPath(), source.toPath());
+                    method = Method.LINK;
+                } catch (UnsupportedOperationException e) {
+                    LOGGER.log(Level.FINE, "Hard links not supported for " + dest, e);
+                } catch (FileSystemException e) {
+                    // most commonly the source is on a different file system
+                    LOGGER.log(Level.FINE, "Could not link " + source + " to " + tmp, e);
+                }
+            }
+            if (method == null) {
+                try {
+                    copyChannel(source, tmp);
+                    method = Method.CHANNEL;
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Could not transfer " + source + " by channel, falling back to copy", e);
+                    copyStream(source, tmp);
+                    method = Method.STREAM;
+                }
+                if (!tmp.setLastModified(source.lastModified())) {
+                    LOGGER.log(Level.FINE, "Could not preserve last modified time of {0}", source);
+                }
+            }
+            rename(tmp, dest);
+            return method;
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private static void copyChannel(File source, File dest) throws IOException {
+        FileInputStream in = new FileInputStream(source);
+        try {
+            FileOutputStream out = new FileOutputStream(dest);
+            try {
+                FileChannel src = in.getChannel();
+                FileChannel dst = out.getChannel();
+                long size = src.size();
+                long position = 0;
+                while (position < size) {
+                    long n = src.transferTo(position, size - position, dst);
+                    if (n <= 0) {
+                        throw new IOException("Transferred " + position + " of " + size + " bytes of " + source);
+                    }
+                    position += n;
+                }
+                dst.force(false);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void copyStream(File source, File dest) throws IOException {
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new FileOutputStream(dest);
+            try {
+                byte[] buf = new byte[65536];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    out.write(buf, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void rename(File tmp, File dest) throws IOException {
+        try {
+            Files.move(tmp.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
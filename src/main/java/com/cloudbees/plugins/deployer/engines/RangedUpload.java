@@ -0,0 +1,347 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import com.cloudbees.plugins.deployer.NamedThreadFactory;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads a large file as a number of byte ranges sent concurrently, so that the throughput is not limited to what a
+ * single connection can achieve. Once every range has been uploaded, {@link #complete(List)} is called so that the
+ * receiver can reassemble the ranges. The number of ranges adapts to the size of the file.
+ * <p>
+ * When created with the {@link TransferContext} of a {@link StreamingDeployActor}, the file is also read a second time,
+ * in order, on an extra thread alongside the ranges so that the digest recorded by the
+ * {@link Engine.FingerprintingWrapper} is still computed during the transfer. A digest cannot be computed from ranges
+ * read out of order without holding the later ranges in memory, so this costs an extra read of the file, which is
+ * usually served from the page cache as the ranges are reading the same bytes at the same time. Create the upload
+ * without a context if the digest is not needed.
+ * <p>
+ * Instances are intended to be created and used by a deploy actor on the node holding the file.
+ */
+public abstract class RangedUpload {
+
+    /**
+     * The smallest range worth uploading separately.
+     */
+    public static final long DEFAULT_MIN_RANGE_SIZE =
+            Long.getLong(RangedUpload.class.getName() + ".minRangeSize", 16L * 1024 * 1024);
+
+    /**
+     * The maximum number of ranges to upload concurrently.
+     */
+    public static final int DEFAULT_MAX_RANGES =
+            Integer.getInteger(RangedUpload.class.getName() + ".maxRanges", 8);
+
+    /**
+     * The file to upload.
+     */
+    @NonNull
+    private final File file;
+
+    /**
+     * The context to compute the digest through or {@code null}.
+     */
+    @CheckForNull
+    private final TransferContext context;
+
+    /**
+     * The ranges.
+     */
+    @NonNull
+    private final List<Range> ranges;
+
+    /**
+     * Constructor using the default range sizing.
+     *
+     * @param file    the file to upload.
+     * @param context the context to compute the digest through or {@code null}.
+     */
+    protected RangedUpload(@NonNull File file, @CheckForNull TransferContext context) {
+        this(file, context, DEFAULT_MIN_RANGE_SIZE, DEFAULT_MAX_RANGES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file         the file to upload.
+     * @param context      the context to compute the digest through or {@code null}.
+     * @param minRangeSize the smallest range worth uploading separately.
+     * @param maxRanges    the maximum number of ranges.
+     */
+    protected RangedUpload(@NonNull File file, @CheckForNull TransferContext context, long minRangeSize,
+                           int maxRanges) {
+        file.getClass(); // throw NPE if null
+        this.file = file;
+        this.context = context;
+        long length = file.length();
+        int count = rangeCount(length, minRangeSize, maxRanges);
+        List<Range> ranges = new ArrayList<Range>(count);
+        long offset = 0;
+        for (int i = 0; i < count; i++) {
+            long end = length * (i + 1) / count;
+            ranges.add(new Range(i, offset, end - offset));
+            offset = end;
+        }
+        this.ranges = Collections.unmodifiableList(ranges);
+    }
+
+    /**
+     * Returns the number of ranges to split a file into, one per {@code minRangeSize} bytes up to {@code maxRanges}.
+     *
+     * @param length       the length of the file.
+     * @param minRangeSize the smallest range worth uploading separately.
+     * @param maxRanges    the maximum number of ranges.
+     * @return the number of ranges, at least one.
+     */
+    public static int rangeCount(long length, long minRangeSize, int maxRanges) {
+        if (length <= 0 || minRangeSize <= 0) {
+            return 1;
+        }
+        long count = (length + minRangeSize - 1) / minRangeSize;
+        return (int) Math.max(1L, Math.min(Math.max(1, maxRanges), count));
+    }
+
+    @NonNull
+    public File getFile() {
+        return file;
+    }
+
+    @NonNull
+    public List<Range> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * Uploads a single range. Called concurrently for different ranges.
+     *
+     * @param range the range.
+     * @param in    the content of the range.
+     * @throws IOException if the range could not be uploaded.
+     */
+    protected abstract void uploadRange(@NonNull Range range, @NonNull InputStream in) throws IOException;
+
+    /**
+     * Called once every range has been uploaded so that the receiver can reassemble them.
+     *
+     * @param ranges the ranges in file order.
+     * @throws IOException if the receiver could not reassemble the ranges.
+     */
+    protected abstract void complete(@NonNull List<Range> ranges) throws IOException;
+
+    /**
+     * Uploads all the ranges concurrently and then calls {@link #complete(List)}. If any range fails, or this is
+     * interrupted, the others are interrupted and waited for before returning.
+     *
+     * @throws IOException          if a range could not be uploaded or the receiver could not reassemble them.
+     * @throws InterruptedException if interrupted.
+     */
+    public void upload() throws IOException, InterruptedException {
+        int tasks = ranges.size() + (context == null ? 0 : 1);
+        ExecutorService executor = Executors.newFixedThreadPool(tasks, new NamedThreadFactory("RangedUpload", null));
+        try {
+            ExecutorCompletionService<Void> completion = new ExecutorCompletionService<Void>(executor);
+            for (final Range range : ranges) {
+                completion.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        InputStream in = new RangeInputStream(file, range.getOffset(), range.getLength());
+                        try {
+                            uploadRange(range, in);
+                        } finally {
+                            in.close();
+                        }
+                        return null;
+                    }
+                });
+            }
+            if (context != null) {
+                completion.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        // read the file in order so that the context records the digest
+                        InputStream in = context.openInputStream();
+                        try {
+                            byte[] buf = new byte[65536];
+                            while (in.read(buf) != -1) {
+                                if (Thread.interrupted()) {
+                                    throw new InterruptedException();
+                                }
+                            }
+                        } finally {
+                            in.close();
+                        }
+                        return null;
+                    }
+                });
+            }
+            for (int i = 0; i < tasks; i++) {
+                try {
+                    completion.take().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    throw new IOException("Could not upload " + file, cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            // do not let the caller retry or report the failure while ranges are still being sent
+            awaitTermination(executor);
+        }
+        complete(ranges);
+    }
+
+    /**
+     * Waits for the tasks of a shut down executor to finish, even if interrupted while waiting.
+     *
+     * @param executor the executor.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A byte range of the file.
+     */
+    public static final class Range {
+        private final int index;
+        private final long offset;
+        private final long length;
+
+        Range(int index, long offset, long length) {
+            this.index = index;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Returns the position of the range in the file, starting from {@code 0}.
+         *
+         * @return the position of the range in the file.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "Range{" +
+                    "index=" + index +
+                    ", offset=" + offset +
+                    ", length=" + length +
+                    '}';
+        }
+    }
+
+    /**
+     * Reads a range of the file through a {@link FileChannel} of its own. Interrupting a thread blocked on a channel
+     * closes the channel, so sharing one channel between the ranges would fail every range when one is interrupted.
+     */
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RangeInputStream(File file, long offset, long length) throws IOException {
+            this.channel = new FileInputStream(file).getChannel();
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n == -1) {
+                return -1;
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import net.jcip.annotations.Immutable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * How an {@link Engine} retries a deployment to a target that failed with a transient error. The delay before each
+ * retry grows exponentially from the base delay up to the maximum delay, with a random fraction of it removed so
+ * that concurrent deployments do not retry in lock step. Policies are serializable so that deploy actors can take
+ * them to the node that performs the deployment.
+ */
+@Immutable
+public class RetryPolicy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The policy that does not retry.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0L, 0L, 0.0);
+
+    /**
+     * The maximum number of attempts, including the first.
+     */
+    private final int maxAttempts;
+
+    /**
+     * The delay before the first retry.
+     */
+    private final long baseDelayMillis;
+
+    /**
+     * The upper bound of the delay before any retry.
+     */
+    private final long maxDelayMillis;
+
+    /**
+     * The fraction of each delay that may be randomly removed, between {@code 0.0} and {@code 1.0}.
+     */
+    private final double jitter;
+
+    /**
+     * The exception types that are worth retrying, matched against the whole cause chain.
+     */
+    @NonNull
+    private final List<Class<? extends Throwable>> retryOn;
+
+    /**
+     * Constructor that retries on {@link IOException}.
+     *
+     * @param maxAttempts     the maximum number of attempts, including the first.
+     * @param baseDelayMillis the delay before the first retry.
+     * @param maxDelayMillis  the upper bound of the delay before any retry.
+     * @param jitter          the fraction of each delay that may be randomly removed.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, double jitter) {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, jitter,
+                Collections.<Class<? extends Throwable>>singletonList(IOException.class));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxAttempts     the maximum number of attempts, including the first.
+     * @param baseDelayMillis the delay before the first retry.
+     * @param maxDelayMillis  the upper bound of the delay before any retry.
+     * @param jitter          the fraction of each delay that may be randomly removed.
+     * @param retryOn         the exception types that are worth retrying.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, double jitter,
+                       @NonNull List<Class<? extends Throwable>> retryOn) {
+        retryOn.getClass(); // throw NPE if null
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = Math.max(0L, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+        this.jitter = Math.max(0.0, Math.min(1.0, jitter));
+        this.retryOn = Collections.unmodifiableList(new ArrayList<Class<? extends Throwable>>(retryOn));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    @NonNull
+    public List<Class<? extends Throwable>> getRetryOn() {
+        return retryOn;
+    }
+
+    /**
+     * Returns a copy of this policy that retries on the supplied exception types instead.
+     *
+     * @param retryOn the exception types that are worth retrying.
+     * @return the new policy.
+     */
+    @NonNull
+    public RetryPolicy withRetryOn(@NonNull Class<? extends Throwable>... retryOn) {
+        return new RetryPolicy(maxAttempts, baseDelayMillis, maxDelayMillis, jitter, Arrays.asList(retryOn));
+    }
+
+    /**
+     * Checks whether another attempt should be made after a failed attempt.
+     *
+     * @param attempt the number of the attempt that failed, starting from {@code 1}.
+     * @param failure the failure.
+     * @return {@code true} if another attempt should be made.
+     */
+    public boolean shouldRetry(int attempt, @CheckForNull Throwable failure) {
+        // an aborted build or an expired deadline interrupts the deploying thread
+        return attempt < maxAttempts && !Thread.currentThread().isInterrupted() && isRetryable(failure);
+    }
+
+    /**
+     * Checks whether the failure, or any of its causes, is of a type that is worth retrying. An interrupted
+     * deployment is never retried, whether the interrupt surfaced as an {@link InterruptedException}, an
+     * {@link InterruptedIOException} or a {@link ClosedByInterruptException}. A {@link SocketTimeoutException} is
+     * an {@link InterruptedIOException} in name only and stays retryable.
+     *
+     * @param failure the failure.
+     * @return {@code true} if the failure is worth retrying.
+     */
+    public boolean isRetryable(@CheckForNull Throwable failure) {
+        boolean retryable = false;
+        for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof InterruptedException
+                    || t instanceof ClosedByInterruptException
+                    || (t instanceof InterruptedIOException && !(t instanceof SocketTimeoutException))) {
+                return false;
+            }
+            for (Class<? extends Throwable> type : retryOn) {
+                retryable = retryable || type.isInstance(t);
+            }
+        }
+        return retryable;
+    }
+
+    /**
+     * Returns the delay before the next attempt.
+     *
+     * @param attempt the number of the attempt that failed, starting from {@code 1}.
+     * @param random  the source of jitter.
+     * @return the delay in milliseconds.
+     */
+    public long getDelayMillis(int attempt, @NonNull Random random) {
+        long delay = baseDelayMillis;
+        for (int i = 1; i < attempt && delay < maxDelayMillis; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxDelayMillis);
+        return delay - (long) (delay * jitter * random.nextDouble());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "RetryPolicy{" +
+                "maxAttempts=" + maxAttempts +
+                ", baseDelayMillis=" + baseDelayMillis +
+                ", maxDelayMillis=" + maxDelayMillis +
+                ", jitter=" + jitter +
+                ", retryOn=" + retryOn +
+                '}';
+    }
+}
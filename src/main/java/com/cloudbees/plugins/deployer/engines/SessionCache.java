@@ -0,0 +1,465 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsStore;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.deployer.exceptions.DeployException;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.ItemGroup;
+import hudson.model.ModelObject;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.acegisecurity.Authentication;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded cache of {@link DeploySession}s shared by all the {@link Engine}s on the master, so that deployments to
+ * the same host in quick succession can reuse a connection or access token rather than authenticating again. Entries
+ * are keyed by the engine type, the engine's {@link Engine#getSessionKey()} and the authentications used to look up
+ * credentials. Entries expire after a time to live and are swept from the cache once expired, the least recently used
+ * entries are evicted when the cache is full and entries are invalidated when a credentials store they may depend on
+ * is saved. A session is only closed once every engine that acquired it has released it.
+ */
+public final class SessionCache {
+
+    private static final Logger LOGGER = Logger.getLogger(SessionCache.class.getName());
+
+    /**
+     * The maximum number of entries to retain.
+     */
+    private static final int MAX_ENTRIES = Integer.getInteger(SessionCache.class.getName() + ".maxEntries", 64);
+
+    /**
+     * The time to live of an entry in milliseconds.
+     */
+    private static final long TTL_MILLIS = Long.getLong(SessionCache.class.getName() + ".ttlMillis",
+            TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * The cache on the master.
+     */
+    private static final SessionCache INSTANCE = new SessionCache(MAX_ENTRIES, TTL_MILLIS);
+
+    /**
+     * Opens a session on a cache miss.
+     */
+    public interface Opener {
+        /**
+         * Opens the session.
+         *
+         * @return the session or {@code null} if there is no session to share.
+         * @throws DeployException if the session could not be opened.
+         */
+        @CheckForNull
+        DeploySession open() throws DeployException;
+    }
+
+    /**
+     * The time to live of an entry in milliseconds.
+     */
+    private final long ttlMillis;
+
+    /**
+     * The entries, in least recently used order, guarded by {@code this}.
+     */
+    private final Map<Key, Entry> entries;
+
+    /**
+     * Entries that have been evicted while in use, guarded by {@code this}.
+     */
+    private final List<Entry> evicted = new ArrayList<Entry>();
+
+    /**
+     * Whether a sweep of the expired entries is scheduled, guarded by {@code this}.
+     */
+    private boolean sweepScheduled;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries the maximum number of entries to retain.
+     * @param ttlMillis  the time to live of an entry in milliseconds.
+     */
+    SessionCache(final int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > maxEntries) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache on the master.
+     *
+     * @return the cache on the master.
+     */
+    @NonNull
+    public static SessionCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached session for the key, opening and caching a new session if there is no live entry. Every
+     * session returned by this method must be passed to {@link #release(DeploySession)} once it is no longer in use.
+     *
+     * @param key    the key.
+     * @param opener opens the session if there is no live entry.
+     * @return the session or {@code null} if the opener does not provide one.
+     * @throws DeployException if the session could not be opened.
+     */
+    @CheckForNull
+    public DeploySession acquire(@NonNull Key key, @NonNull Opener opener) throws DeployException {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.isExpired(System.currentTimeMillis())) {
+                    entries.remove(key);
+                    entry.evict();
+                } else {
+                    entry.refs++;
+                    return entry.session;
+                }
+            }
+        }
+        // open without holding the lock, another engine may open a session for the same key concurrently
+        DeploySession session = opener.open();
+        if (session == null) {
+            return null;
+        }
+        Entry entry = new Entry(session, System.currentTimeMillis() + ttlMillis);
+        entry.refs++;
+        synchronized (this) {
+            Entry existing = entries.put(key, entry);
+            if (existing != null) {
+                existing.evict();
+            }
+            scheduleSweep();
+        }
+        return session;
+    }
+
+    /**
+     * Releases a session returned by {@link #acquire(Key, Opener)}. The session is closed if it is no longer cached
+     * and no other engine is using it.
+     *
+     * @param session the session.
+     */
+    public void release(@NonNull DeploySession session) {
+        Entry entry = null;
+        synchronized (this) {
+            for (Entry e : entries.values()) {
+                if (e.session == session) {
+                    entry = e;
+                    break;
+                }
+            }
+            if (entry == null) {
+                entry = findEvicted(session);
+            }
+            if (entry == null) {
+                return;
+            }
+            entry.refs--;
+            if (!entry.evicted || entry.refs > 0) {
+                return;
+            }
+            evicted.remove(entry);
+        }
+        close(session);
+    }
+
+    /**
+     * Invalidates all the entries, closing the sessions that are not in use.
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+                Entry entry = iterator.next();
+                iterator.remove();
+                entry.evict();
+            }
+        }
+    }
+
+    /**
+     * Invalidates the entries opened with an authentication, closing the sessions that are not in use.
+     *
+     * @param authenticationName the name of the authentication.
+     */
+    public void invalidate(@NonNull String authenticationName) {
+        synchronized (this) {
+            for (Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<Key, Entry> entry = iterator.next();
+                if (entry.getKey().authentications.contains(authenticationName)) {
+                    iterator.remove();
+                    entry.getValue().evict();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the expired entries, closing the sessions that are not in use, so that an idle session does not
+     * outlive its time to live just because no engine asks for it again.
+     */
+    void sweep() {
+        synchronized (this) {
+            sweepScheduled = false;
+            long now = System.currentTimeMillis();
+            for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+                Entry entry = iterator.next();
+                if (entry.isExpired(now)) {
+                    iterator.remove();
+                    entry.evict();
+                }
+            }
+            scheduleSweep();
+        }
+    }
+
+    /**
+     * Schedules a sweep for when the first of the entries expires, unless one is already scheduled. Must be called
+     * with the cache lock held.
+     */
+    private void scheduleSweep() {
+        if (sweepScheduled || entries.isEmpty()) {
+            return;
+        }
+        long expires = Long.MAX_VALUE;
+        for (Entry entry : entries.values()) {
+            expires = Math.min(expires, entry.expires);
+        }
+        sweepScheduled = true;
+        Timer.get().schedule(new Runnable() {
+            public void run() {
+                sweep();
+            }
+        }, Math.max(0L, expires - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @CheckForNull
+    private Entry findEvicted(DeploySession session) {
+        for (Entry e : evicted) {
+            if (e.session == session) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private static void close(DeploySession session) {
+        try {
+            session.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not close evicted session", e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not close evicted session", e);
+        }
+    }
+
+    /**
+     * A cached session.
+     */
+    private final class Entry {
+        @NonNull
+        private final DeploySession session;
+        private final long expires;
+        /**
+         * The number of engines using the session, guarded by the cache.
+         */
+        private int refs;
+        /**
+         * Whether the entry has been removed from the cache, guarded by the cache.
+         */
+        private boolean evicted;
+
+        private Entry(@NonNull DeploySession session, long expires) {
+            this.session = session;
+            this.expires = expires;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expires;
+        }
+
+        /**
+         * Marks the entry as removed from the cache, closing the session if it is not in use. Must be called with
+         * the cache lock held.
+         */
+        private void evict() {
+            evicted = true;
+            if (refs > 0) {
+                SessionCache.this.evicted.add(this);
+            } else {
+                close(session);
+            }
+        }
+    }
+
+    /**
+     * The key of a cached session.
+     */
+    public static final class Key {
+        @NonNull
+        private final String engine;
+        @NonNull
+        private final String sessionKey;
+        @NonNull
+        private final List<String> authentications;
+
+        /**
+         * Constructor.
+         *
+         * @param engine          the type of engine.
+         * @param sessionKey      the identity of the host as returned by {@link Engine#getSessionKey()}.
+         * @param authentications the authentications used to look up credentials.
+         */
+        public Key(@NonNull Class<? extends Engine> engine, @NonNull String sessionKey,
+                   @NonNull List<Authentication> authentications) {
+            sessionKey.getClass(); // throw NPE if null
+            this.engine = engine.getName();
+            this.sessionKey = sessionKey;
+            List<String> names = new ArrayList<String>(authentications.size());
+            for (Authentication authentication : authentications) {
+                names.add(authentication.getName());
+            }
+            this.authentications = Collections.unmodifiableList(names);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Key key = (Key) o;
+
+            return engine.equals(key.engine)
+                    && sessionKey.equals(key.sessionKey)
+                    && authentications.equals(key.authentications);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            int result = engine.hashCode();
+            result = 31 * result + sessionKey.hashCode();
+            result = 31 * result + authentications.hashCode();
+            return result;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "Key{" +
+                    "engine='" + engine + '\'' +
+                    ", sessionKey='" + sessionKey + '\'' +
+                    ", authentications=" + authentications +
+                    '}';
+        }
+    }
+
+    /**
+     * Invalidates the cache when credentials may have changed.
+     */
+    @Extension
+    public static class CredentialsSaveableListener extends SaveableListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof User) {
+                // user scoped credentials are only visible to sessions opened with the user's own authentication
+                get().invalidate(((User) o).getId());
+            } else if (o instanceof SystemCredentialsProvider || o instanceof CredentialsStore) {
+                get().invalidateAll();
+            } else if (o instanceof ItemGroup && !(o instanceof Jenkins) && isStoreContext((ItemGroup) o)) {
+                // folder scoped credentials are saved with the folder
+                get().invalidateAll();
+            }
+        }
+
+        /**
+         * Returns {@code true} if the object holds a credentials store of its own, rather than only seeing the
+         * stores of its parents.
+         *
+         * @param context the object.
+         * @return {@code true} if the object holds a credentials store of its own.
+         */
+        private static boolean isStoreContext(@NonNull ModelObject context) {
+            for (CredentialsStore store : CredentialsProvider.lookupStores(context)) {
+                if (store.getContext() == context) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
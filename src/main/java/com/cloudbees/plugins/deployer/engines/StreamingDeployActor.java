@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Base class for deploy actors that read the application file through a {@link TransferContext}, allowing the
+ * digest of the file to be computed while it is being uploaded rather than by reading the file again afterwards.
+ * Engines can return one of these from {@link Engine#newDeployActor(com.cloudbees.plugins.deployer.targets.DeployTarget)}.
+ *
+ * @param <T> the return type.
+ */
+public abstract class StreamingDeployActor<T> extends MasterToSlaveFileCallable<T> {
+
+    /**
+     * {@inheritDoc}
+     */
+    public final T invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+        return invoke(f, channel, new TransferContext(f));
+    }
+
+    /**
+     * Performs the deployment of the application file.
+     *
+     * @param f       the application file.
+     * @param channel the channel back to the master.
+     * @param context the context through which the application file should be read.
+     * @return the result of the deployment.
+     * @throws IOException          if something goes wrong.
+     * @throws InterruptedException if interrupted.
+     */
+    public abstract T invoke(File f, VirtualChannel channel, @NonNull TransferContext context)
+            throws IOException, InterruptedException;
+}
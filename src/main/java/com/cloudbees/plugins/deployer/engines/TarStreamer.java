@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.FilePath;
+import hudson.remoting.Pipe;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DirScanner;
+import hudson.util.io.Archiver;
+import hudson.util.io.ArchiverFactory;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Streams a directory as a single tar archive, optionally gzip compressed, so that engines deploying to directory
+ * targets can send the whole directory in one stream instead of one remoting round trip per file. The directory is
+ * walked on the node holding it.
+ */
+public final class TarStreamer {
+
+    private TarStreamer() {
+    }
+
+    /**
+     * Writes a directory as a tar archive. Use this from a deploy actor running on the node holding the directory.
+     *
+     * @param dir      the directory.
+     * @param sink     the stream to write the archive to, which is not closed.
+     * @param compress {@code true} to gzip compress the archive.
+     * @return the number of files written.
+     * @throws IOException if the directory could not be read or the archive could not be written.
+     */
+    public static int write(@NonNull File dir, @NonNull OutputStream sink, boolean compress) throws IOException {
+        Archiver archiver = (compress ? ArchiverFactory.TARGZ : ArchiverFactory.TAR)
+                .create(new NonClosingOutputStream(sink));
+        try {
+            new DirScanner.Full().scan(dir, archiver);
+        } finally {
+            archiver.close();
+        }
+        return archiver.countEntries();
+    }
+
+    /**
+     * Streams a directory, which may be on another node, as a tar archive to a stream on this node. The directory
+     * is walked and archived on its node in a single call.
+     *
+     * @param dir      the directory.
+     * @param sink     the stream to write the archive to, which is not closed.
+     * @param compress {@code true} to gzip compress the archive.
+     * @return the number of files written.
+     * @throws IOException          if the directory could not be read or the archive could not be written.
+     * @throws InterruptedException if interrupted.
+     */
+    public static int write(@NonNull FilePath dir, @NonNull OutputStream sink, boolean compress)
+            throws IOException, InterruptedException {
+        return dir.archive(compress ? ArchiverFactory.TARGZ : ArchiverFactory.TAR, new NonClosingOutputStream(sink),
+                new DirScanner.Full());
+    }
+
+    /**
+     * Opens a stream of a directory, which may be on another node, as a tar archive. The archive is produced on the
+     * directory's node while the returned stream is being read. Closing the stream reports any failure to produce the
+     * archive.
+     *
+     * @param dir      the directory.
+     * @param compress {@code true} to gzip compress the archive.
+     * @return the stream, the caller is responsible for closing it.
+     * @throws IOException          if the archive could not be started.
+     * @throws InterruptedException if interrupted.
+     */
+    @NonNull
+    public static InputStream open(@NonNull FilePath dir, boolean compress) throws IOException, InterruptedException {
+        Pipe pipe = Pipe.createRemoteToLocal();
+        Future<Integer> future = dir.actAsync(new Archive(pipe, compress));
+        return new ArchiveInputStream(pipe.getIn(), future);
+    }
+
+    /**
+     * Writes the archive into a pipe on the directory's node.
+     */
+    private static class Archive extends MasterToSlaveFileCallable<Integer> {
+        private static final long serialVersionUID = 1L;
+        private final Pipe pipe;
+        private final boolean compress;
+
+        Archive(Pipe pipe, boolean compress) {
+            this.pipe = pipe;
+            this.compress = compress;
+        }
+
+        public Integer invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+            OutputStream out = pipe.getOut();
+            try {
+                return write(f, out, compress);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Reports the outcome of producing the archive when closed after being read to the end.
+     */
+    private static class ArchiveInputStream extends FilterInputStream {
+        private final Future<Integer> future;
+        private boolean eof;
+
+        ArchiveInputStream(InputStream in, Future<Integer> future) {
+            super(in);
+            this.future = future;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            eof = b == -1;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            eof = n == -1;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (!eof) {
+                // the caller gave up part way through, don't wait for an archive that nobody will read
+                future.cancel(true);
+                return;
+            }
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                throw (IOException) new InterruptedIOException("Interrupted waiting for archive").initCause(e);
+            } catch (ExecutionException e) {
+                throw new IOException("Could not archive directory", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Prevents the archiver from closing the caller's stream.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * A compression codec for the stream that carries an application file to its deploy endpoint. The framework offers
+ * {@link #GZIP} and {@link #DEFLATE} (zlib at its fastest setting) and engines negotiate which one to use from the
+ * encodings their endpoint accepts with {@link TransferContext#negotiateCodec(Collection)}. Engines can supply their
+ * own codecs by subclassing.
+ */
+public abstract class TransferCodec implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * No compression.
+     */
+    public static final TransferCodec IDENTITY = new TransferCodec("identity") {
+        private static final long serialVersionUID = 1L;
+
+        @NonNull
+        @Override
+        public OutputStream compress(@NonNull OutputStream out) {
+            return out;
+        }
+
+        @NonNull
+        @Override
+        public InputStream decompress(@NonNull InputStream in) {
+            return in;
+        }
+    };
+
+    /**
+     * gzip at the default compression level, better ratio for slow links.
+     */
+    public static final TransferCodec GZIP = new TransferCodec("gzip") {
+        private static final long serialVersionUID = 1L;
+
+        @NonNull
+        @Override
+        public OutputStream compress(@NonNull OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, 65536);
+        }
+
+        @NonNull
+        @Override
+        public InputStream decompress(@NonNull InputStream in) throws IOException {
+            return new GZIPInputStream(in, 65536);
+        }
+    };
+
+    /**
+     * zlib deflate (LZ77 based) at its fastest level, lower CPU cost for fast links.
+     */
+    public static final TransferCodec DEFLATE = new TransferCodec("deflate") {
+        private static final long serialVersionUID = 1L;
+
+        @NonNull
+        @Override
+        public OutputStream compress(@NonNull OutputStream out) {
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            return new DeflaterOutputStream(out, deflater, 65536) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+
+        @NonNull
+        @Override
+        public InputStream decompress(@NonNull InputStream in) {
+            return new InflaterInputStream(in);
+        }
+    };
+
+    /**
+     * The number of bytes sampled to decide whether content is worth compressing.
+     */
+    private static final int SAMPLE_SIZE = 65536;
+
+    /**
+     * The number of places in the content that the sample is taken from.
+     */
+    private static final int SAMPLE_COUNT = 8;
+
+    /**
+     * The signature of the local file header that zip archives such as WARs start with.
+     */
+    private static final int ZIP_SIGNATURE = 0x504B0304;
+
+    /**
+     * The compressed to raw ratio of the sample above which content is treated as already compressed.
+     */
+    private static final double INCOMPRESSIBLE_RATIO = Double.parseDouble(
+            System.getProperty(TransferCodec.class.getName() + ".incompressibleRatio", "0.9"));
+
+    /**
+     * The name of the codec, matching the HTTP content coding where there is one.
+     */
+    @NonNull
+    private final String name;
+
+    protected TransferCodec(@NonNull String name) {
+        name.getClass(); // throw NPE if null
+        this.name = name;
+    }
+
+    /**
+     * Returns the framework's codecs in the framework's order of preference.
+     *
+     * @return the framework's codecs in the framework's order of preference.
+     */
+    @NonNull
+    public static List<TransferCodec> all() {
+        return Collections.unmodifiableList(new ArrayList<TransferCodec>(Arrays.asList(GZIP, DEFLATE, IDENTITY)));
+    }
+
+    /**
+     * Picks the codec to use from the codecs the endpoint accepts.
+     *
+     * @param accepted  the names of the codecs the endpoint accepts, in any order.
+     * @param available the codecs available in order of preference.
+     * @return the most preferred available codec that the endpoint accepts or {@link #IDENTITY} if there is none.
+     */
+    @NonNull
+    public static TransferCodec negotiate(@NonNull Collection<String> accepted,
+                                          @NonNull List<? extends TransferCodec> available) {
+        for (TransferCodec codec : available) {
+            for (String name : accepted) {
+                if (codec.getName().equalsIgnoreCase(name.trim())) {
+                    return codec;
+                }
+            }
+        }
+        return IDENTITY;
+    }
+
+    /**
+     * Compresses a sample of a file with {@link #DEFLATE} to decide whether the file is worth compressing, so that
+     * content which is already compressed is sent as is. A zip archive is sampled from its stored entries only, as
+     * its deflated entries are already compressed, and one that is mostly deflated is not worth compressing. Any
+     * other file is sampled at several offsets, as a compressible header can hide compressed content behind it.
+     *
+     * @param file the file.
+     * @return {@code true} if the sample compresses well enough.
+     * @throws IOException if the file could not be read.
+     */
+    public static boolean isCompressible(@NonNull File file) throws IOException {
+        long length = file.length();
+        if (length == 0) {
+            return false;
+        }
+        ByteArrayOutputStream sample = new ByteArrayOutputStream(SAMPLE_SIZE);
+        if (!sampleStoredEntries(file, length, sample)) {
+            sampleOffsets(file, length, sample);
+        }
+        return sample.size() > 0 && compressedRatio(sample.toByteArray(), sample.size()) <= INCOMPRESSIBLE_RATIO;
+    }
+
+    /**
+     * Samples the stored entries of a zip archive from the middle of evenly sized slices of their combined content,
+     * so that large entries weigh in proportion to their size. Nothing is sampled if less than a tenth of the archive
+     * is stored.
+     *
+     * @param file   the file.
+     * @param length the length of the file.
+     * @param sample where to put the sample.
+     * @return {@code false} if the file is not a zip archive.
+     * @throws IOException if the file could not be read.
+     */
+    private static boolean sampleStoredEntries(File file, long length, ByteArrayOutputStream sample)
+            throws IOException {
+        if (length < 4) {
+            return false;
+        }
+        DataInputStream header = new DataInputStream(new FileInputStream(file));
+        try {
+            if (header.readInt() != ZIP_SIGNATURE) {
+                return false;
+            }
+        } finally {
+            header.close();
+        }
+        ZipFile zip;
+        try {
+            zip = new ZipFile(file);
+        } catch (ZipException e) {
+            // starts like a zip archive but is not one
+            return false;
+        }
+        try {
+            List<ZipEntry> stored = new ArrayList<ZipEntry>();
+            long storedBytes = 0;
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getMethod() == ZipEntry.STORED && entry.getSize() > 0) {
+                    stored.add(entry);
+                    storedBytes += entry.getSize();
+                }
+            }
+            if (storedBytes * 10 < length) {
+                // already compressed
+                return true;
+            }
+            byte[] chunk = new byte[SAMPLE_SIZE / SAMPLE_COUNT];
+            int index = 0;
+            long entryStart = 0;
+            for (int i = 0; i < SAMPLE_COUNT; i++) {
+                // the middle of each of SAMPLE_COUNT equal slices of the stored content
+                long offset = (2 * i + 1) * storedBytes / (2 * SAMPLE_COUNT);
+                while (offset >= entryStart + stored.get(index).getSize()) {
+                    entryStart += stored.get(index).getSize();
+                    index++;
+                }
+                InputStream in = zip.getInputStream(stored.get(index));
+                try {
+                    long skip = offset - entryStart;
+                    while (skip > 0) {
+                        long skipped = in.skip(skip);
+                        if (skipped <= 0) {
+                            break;
+                        }
+                        skip -= skipped;
+                    }
+                    int n = read(in, chunk);
+                    sample.write(chunk, 0, n);
+                } finally {
+                    in.close();
+                }
+            }
+            return true;
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * Samples a file from the middle of evenly sized slices of it, or the whole file if it is small.
+     *
+     * @param file   the file.
+     * @param length the length of the file.
+     * @param sample where to put the sample.
+     * @throws IOException if the file could not be read.
+     */
+    private static void sampleOffsets(File file, long length, ByteArrayOutputStream sample) throws IOException {
+        int count = length <= SAMPLE_SIZE ? 1 : SAMPLE_COUNT;
+        byte[] chunk = new byte[(int) Math.min(length, SAMPLE_SIZE / count)];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            for (int i = 0; i < count; i++) {
+                // the middle of each of count equal slices of the file
+                raf.seek((2 * i + 1) * length / (2 * count) - chunk.length / 2);
+                int n = 0;
+                while (n < chunk.length) {
+                    int r = raf.read(chunk, n, chunk.length - n);
+                    if (r == -1) {
+                        break;
+                    }
+                    n += r;
+                }
+                sample.write(chunk, 0, n);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int read(InputStream in, byte[] buf) throws IOException {
+        int n = 0;
+        while (n < buf.length) {
+            int r = in.read(buf, n, buf.length - n);
+            if (r == -1) {
+                break;
+            }
+            n += r;
+        }
+        return n;
+    }
+
+    private static double compressedRatio(byte[] sample, int len) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(sample, 0, len);
+            deflater.finish();
+            byte[] buf = new byte[8192];
+            long compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(buf);
+            }
+            return (double) compressed / len;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns the name of the codec.
+     *
+     * @return the name of the codec.
+     */
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Wraps a stream so that what is written to it is compressed. Closing the returned stream finishes the
+     * compressed data and closes the wrapped stream.
+     *
+     * @param out the stream to write the compressed data to.
+     * @return the stream to write the uncompressed data to.
+     * @throws IOException if the stream could not be wrapped.
+     */
+    @NonNull
+    public abstract OutputStream compress(@NonNull OutputStream out) throws IOException;
+
+    /**
+     * Wraps a stream of compressed data so that reading it returns the uncompressed data.
+     *
+     * @param in the stream of compressed data.
+     * @return the stream of uncompressed data.
+     * @throws IOException if the stream could not be wrapped.
+     */
+    @NonNull
+    public abstract InputStream decompress(@NonNull InputStream in) throws IOException;
+
+    /**
+     * Returns {@code true} if this codec does not change the data.
+     *
+     * @return {@code true} if this codec does not change the data.
+     */
+    public boolean isIdentity() {
+        return IDENTITY.getName().equals(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(@CheckForNull Object o) {
+        return this == o || (o instanceof TransferCodec && name.equals(((TransferCodec) o).name));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+
+/**
+ * Gives a {@link StreamingDeployActor} access to the application file being deployed through streams that compute
+ * the file's digest as a side effect of being read, so that the {@link Engine.FingerprintingWrapper} does not have to
+ * read the file a second time.
+ */
+public class TransferContext {
+
+    /**
+     * The file being deployed.
+     */
+    @NonNull
+    private final File file;
+
+    /**
+     * The MD5 digest of the file, once one of our streams has read the file from start to end.
+     */
+    @CheckForNull
+    private volatile String digest;
+
+    /**
+     * The outcome of the compressed transfer of the file, once one has completed.
+     */
+    @CheckForNull
+    private volatile CompressionStats compressionStats;
+
+    /**
+     * Constructor.
+     *
+     * @param file the file being deployed.
+     */
+    TransferContext(@NonNull File file) {
+        file.getClass(); // throw NPE if null
+        this.file = file;
+    }
+
+    /**
+     * Returns the file being deployed.
+     *
+     * @return the file being deployed.
+     */
+    @NonNull
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Opens an {@link InputStream} of the file being deployed. Reading the stream through to the end will record
+     * the digest of the file.
+     *
+     * @return the stream, the caller is responsible for closing it.
+     * @throws IOException if the file could not be opened.
+     */
+    @NonNull
+    public InputStream openInputStream() throws IOException {
+        return new DigestingInputStream(new FileInputStream(file), file.length());
+    }
+
+    /**
+     * Opens a {@link ReadableByteChannel} of the file being deployed. Reading the channel through to the end will
+     * record the digest of the file.
+     *
+     * @return the channel, the caller is responsible for closing it.
+     * @throws IOException if the file could not be opened.
+     */
+    @NonNull
+    public ReadableByteChannel openChannel() throws IOException {
+        return new DigestingChannel(new FileInputStream(file).getChannel(), file.length());
+    }
+
+    /**
+     * Returns the MD5 digest of the file if it has been completely read through one of the streams of this context.
+     *
+     * @return the MD5 digest of the file or {@code null} if the file has not been completely read.
+     */
+    @CheckForNull
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * Records the digest of a completely read file.
+     *
+     * @param digest the digest.
+     */
+    void setDigest(@CheckForNull String digest) {
+        this.digest = digest;
+    }
+
+    /**
+     * Picks the {@link TransferCodec} to send the file with. Files whose content is already compressed are sent
+     * with {@link TransferCodec#IDENTITY} as compressing them again costs CPU time without saving bytes.
+     *
+     * @param accepted the names of the codecs that the deploy endpoint accepts.
+     * @return the codec to use.
+     * @throws IOException if the file could not be sampled.
+     */
+    @NonNull
+    public TransferCodec negotiateCodec(@NonNull Collection<String> accepted) throws IOException {
+        TransferCodec codec = TransferCodec.negotiate(accepted, TransferCodec.all());
+        if (codec.isIdentity() || !TransferCodec.isCompressible(file)) {
+            return TransferCodec.IDENTITY;
+        }
+        return codec;
+    }
+
+    /**
+     * Sends the whole file to a stream through a codec, recording both the digest and the {@link CompressionStats}
+     * of the file. The stream is closed on return.
+     *
+     * @param out   the stream to the deploy endpoint.
+     * @param codec the codec to compress with.
+     * @return the outcome of the compression.
+     * @throws IOException if the file could not be sent.
+     */
+    @NonNull
+    public CompressionStats transferTo(@NonNull OutputStream out, @NonNull TransferCodec codec) throws IOException {
+        CountingOutputStream wire = new CountingOutputStream(out);
+        CountingOutputStream raw = new CountingOutputStream(codec.compress(wire));
+        InputStream in = openInputStream();
+        try {
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                raw.write(buf, 0, n);
+            }
+        } finally {
+            try {
+                in.close();
+            } finally {
+                raw.close();
+            }
+        }
+        CompressionStats stats = new CompressionStats(codec.getName(), raw.getCount(), wire.getCount());
+        setCompressionStats(stats);
+        return stats;
+    }
+
+    /**
+     * Returns the outcome of the compressed transfer of the file.
+     *
+     * @return the outcome of the compressed transfer or {@code null} if the file was not sent with
+     * {@link #transferTo(OutputStream, TransferCodec)} or {@link #setCompressionStats(CompressionStats)}.
+     */
+    @CheckForNull
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    /**
+     * Records the outcome of a compressed transfer, for actors that compress the file themselves.
+     *
+     * @param compressionStats the outcome of the compressed transfer.
+     */
+    public void setCompressionStats(@CheckForNull CompressionStats compressionStats) {
+        this.compressionStats = compressionStats;
+    }
+
+    private static MessageDigest newMessageDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("MD5 is not available", e);
+        }
+    }
+
+    /**
+     * An {@link InputStream} that digests the bytes read.
+     */
+    private class DigestingInputStream extends FilterInputStream {
+        private final MessageDigest md;
+        private final long expected;
+        private long count;
+        /**
+         * Whether the digest has been taken, as {@link MessageDigest#digest()} resets the digest.
+         */
+        private boolean completed;
+
+        DigestingInputStream(InputStream in, long expected) throws IOException {
+            super(in);
+            this.md = newMessageDigest();
+            this.expected = expected;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                complete();
+            } else {
+                md.update((byte) b);
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                complete();
+            } else {
+                md.update(b, off, n);
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // read rather than skip so that the digest still covers every byte
+            byte[] buf = new byte[8192];
+            long skipped = 0;
+            while (skipped < n) {
+                int r = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+                if (r == -1) {
+                    break;
+                }
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        private void complete() {
+            if (!completed && count == expected) {
+                completed = true;
+                setDigest(Util.toHexString(md.digest()));
+            }
+        }
+    }
+
+    /**
+     * A {@link ReadableByteChannel} that digests the bytes read.
+     */
+    private class DigestingChannel implements ReadableByteChannel {
+        private final FileChannel channel;
+        private final MessageDigest md;
+        private final long expected;
+        private long count;
+        /**
+         * Whether the digest has been taken, as {@link MessageDigest#digest()} resets the digest.
+         */
+        private boolean completed;
+
+        DigestingChannel(FileChannel channel, long expected) throws IOException {
+            this.channel = channel;
+            this.md = newMessageDigest();
+            this.expected = expected;
+        }
+
+        public int read(ByteBuffer dst) throws IOException {
+            int start = dst.position();
+            int n = channel.read(dst);
+            if (n == -1) {
+                if (!completed && count == expected) {
+                    completed = true;
+                    setDigest(Util.toHexString(md.digest()));
+                }
+            } else if (n > 0) {
+                ByteBuffer read = dst.duplicate();
+                read.position(start);
+                read.limit(start + n);
+                md.update(read);
+                count += n;
+            }
+            return n;
+        }
+
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * An {@link OutputStream} that counts the bytes written.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
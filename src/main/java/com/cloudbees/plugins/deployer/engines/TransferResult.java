@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.engines;
+
+import com.cloudbees.plugins.deployer.records.DeployedApplicationLocation;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.AbstractMap;
+
+/**
+ * The result of a {@link Engine.FingerprintingWrapper}: the digest of the deployed file and the deployed location,
+ * together with details of how the digest was obtained on the node that performed the deployment.
+ */
+public class TransferResult extends AbstractMap.SimpleEntry<String, DeployedApplicationLocation> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * How the digest was obtained.
+     */
+    public enum DigestSource {
+        /**
+         * No digest was computed.
+         */
+        NONE,
+        /**
+         * The digest was computed while the file was being transferred.
+         */
+        TRANSFER,
+        /**
+         * The digest was supplied by the {@link DigestCache} of the node.
+         */
+        CACHE,
+        /**
+         * The digest was computed by reading the file.
+         */
+        COMPUTED,
+        /**
+         * The digest was supplied from the fingerprint records of the build.
+         */
+        RECORDED
+    }
+
+    @NonNull
+    private final DigestSource digestSource;
+
+    private final long cacheHits;
+
+    private final long cacheMisses;
+
+    private final long digestNanos;
+
+    @CheckForNull
+    private DirectoryManifest manifest;
+
+    @CheckForNull
+    private CompressionStats compressionStats;
+
+    public TransferResult(@NonNull String digest, @CheckForNull DeployedApplicationLocation location,
+                          @NonNull DigestSource digestSource, long cacheHits, long cacheMisses) {
+        this(digest, location, digestSource, cacheHits, cacheMisses, 0L);
+    }
+
+    public TransferResult(@NonNull String digest, @CheckForNull DeployedApplicationLocation location,
+                          @NonNull DigestSource digestSource, long cacheHits, long cacheMisses,
+                          long digestNanos) {
+        super(digest, location);
+        this.digestSource = digestSource;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.digestNanos = digestNanos;
+    }
+
+    /**
+     * Returns how the digest was obtained.
+     *
+     * @return how the digest was obtained.
+     */
+    @NonNull
+    public DigestSource getDigestSource() {
+        return digestSource;
+    }
+
+    /**
+     * Returns the {@link DigestCache#getHitCount()} of the node after this transfer.
+     *
+     * @return the {@link DigestCache#getHitCount()} of the node after this transfer.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the {@link DigestCache#getMissCount()} of the node after this transfer.
+     *
+     * @return the {@link DigestCache#getMissCount()} of the node after this transfer.
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Returns the nanoseconds the node spent obtaining the digest after the transfer completed.
+     *
+     * @return the nanoseconds the node spent obtaining the digest after the transfer completed.
+     */
+    public long getDigestNanos() {
+        return digestNanos;
+    }
+
+    /**
+     * Returns the manifest of the deployed directory when deployed by a {@link DeltaDeployActor}.
+     *
+     * @return the manifest of the deployed directory or {@code null}.
+     */
+    @CheckForNull
+    public DirectoryManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Sets the manifest of the deployed directory.
+     *
+     * @param manifest the manifest of the deployed directory or {@code null}.
+     */
+    void setManifest(@CheckForNull DirectoryManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Returns the outcome of compressing the file on its way to the deploy endpoint.
+     *
+     * @return the outcome of compressing the file or {@code null} if the actor did not report one.
+     */
+    @CheckForNull
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    /**
+     * Sets the outcome of compressing the file on its way to the deploy endpoint.
+     *
+     * @param compressionStats the outcome of compressing the file or {@code null}.
+     */
+    void setCompressionStats(@CheckForNull CompressionStats compressionStats) {
+        this.compressionStats = compressionStats;
+    }
+}
@@ -35,6 +35,7 @@ import hudson.model.AbstractProject;
 import hudson.model.Run;
 import hudson.security.ACL;
 import org.acegisecurity.Authentication;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -54,6 +55,11 @@ public abstract class DeployHost<S extends DeployHost<S, T>, T extends DeployTar
     @NonNull
     private final List<T> targets;
 
+    /**
+     * The maximum number of targets to deploy to this host concurrently.
+     */
+    private int targetConcurrency = 1;
+
     /**
      * Constructor.
      *
@@ -94,6 +100,50 @@ public abstract class DeployHost<S extends DeployHost<S, T>, T extends DeployTar
         return targets;
     }
 
+    /**
+     * Returns the maximum number of targets that an {@link com.cloudbees.plugins.deployer.engines.Engine} should
+     * deploy to this host concurrently. Host services that cannot accept parallel uploads should override this.
+     *
+     * @return the maximum number of targets to deploy concurrently, {@code 1} to deploy them one at a time.
+     */
+    public int getTargetConcurrency() {
+        return Math.max(1, targetConcurrency);
+    }
+
+    /**
+     * Sets the maximum number of targets to deploy to this host concurrently.
+     *
+     * @param targetConcurrency the maximum number of targets to deploy concurrently, values less than {@code 2}
+     *                          deploy them one at a time.
+     */
+    @DataBoundSetter
+    public void setTargetConcurrency(int targetConcurrency) {
+        this.targetConcurrency = Math.max(1, targetConcurrency);
+    }
+
+    /**
+     * Returns the key of the deploy endpoint of this host, such as its URL, for throttling Deploy Now tasks. Tasks
+     * that deploy to the same key share a queue resource limited to {@link #getDeployResourceLimit()} concurrent
+     * deployments, while deployments to other endpoints carry on in parallel. Host services should override this
+     * to throttle deployments to one endpoint.
+     *
+     * @return the key of the deploy endpoint or {@code null} to not throttle deployments to this host.
+     */
+    @CheckForNull
+    public String getDeployResourceKey() {
+        return null;
+    }
+
+    /**
+     * Returns the maximum number of Deploy Now tasks that can deploy to the {@link #getDeployResourceKey()} of this
+     * host at the same time.
+     *
+     * @return the maximum number of concurrent deployments to the deploy endpoint, at least {@code 1}.
+     */
+    public int getDeployResourceLimit() {
+        return 1;
+    }
+
     /**
      * Checks if this deploy set is valid for use against the specified project by the specified authentication.
      *
@@ -172,6 +222,7 @@ public abstract class DeployHost<S extends DeployHost<S, T>, T extends DeployTar
         final StringBuilder sb = new StringBuilder();
         sb.append("DeployHost");
         sb.append("{targets=").append(targets);
+        sb.append(", targetConcurrency=").append(getTargetConcurrency());
         sb.append('}');
         return sb.toString();
     }
@@ -193,6 +244,9 @@ public abstract class DeployHost<S extends DeployHost<S, T>, T extends DeployTar
         if (!targets.equals(deployHost.targets)) {
             return false;
         }
+        if (getTargetConcurrency() != deployHost.getTargetConcurrency()) {
+            return false;
+        }
 
         return true;
     }
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.records;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.BulkChange;
+import hudson.XmlFile;
+import hudson.init.Terminator;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the digest of the artifact most recently deployed to each {@link DeployedApplicationLocation}, so that
+ * a deployment can tell whether the artifact currently live at a location is the one it is about to deploy. Only the
+ * most recently deployed locations are remembered, a forgotten location is simply deployed again. Changes are saved
+ * by the {@link RecordWriter} so that deployments do not wait for the file to be rewritten.
+ */
+public final class DeployedApplicationHistory implements Saveable {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(DeployedApplicationHistory.class.getName());
+
+    /**
+     * The instance for the running Jenkins, lazily loaded and forgotten when Jenkins shuts down.
+     */
+    private static DeployedApplicationHistory instance;
+
+    /**
+     * The maximum number of locations to remember.
+     */
+    private static final int MAX_ENTRIES =
+            Integer.getInteger(DeployedApplicationHistory.class.getName() + ".maxEntries", 10000);
+
+    /**
+     * The MD5 digest of the artifact most recently deployed to each location, least recently deployed first.
+     */
+    private final Map<DeployedApplicationLocation, String> latest =
+            new LinkedHashMap<DeployedApplicationLocation, String>();
+
+    /**
+     * The file the history was loaded from and is saved to, so that a save queued before Jenkins shuts down does
+     * not end up in the home of the next Jenkins instance in the JVM.
+     */
+    private final transient XmlFile file;
+
+    private DeployedApplicationHistory(@NonNull XmlFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the history, loading it from disk if necessary.
+     *
+     * @return the history.
+     */
+    @NonNull
+    public static synchronized DeployedApplicationHistory get() {
+        XmlFile file = getConfigFile();
+        if (instance == null || !instance.file.getFile().equals(file.getFile())) {
+            DeployedApplicationHistory history = new DeployedApplicationHistory(file);
+            if (file.exists()) {
+                try {
+                    file.unmarshal(history);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not load " + file, e);
+                }
+            }
+            instance = history;
+        }
+        return instance;
+    }
+
+    /**
+     * Forgets the history when Jenkins shuts down so that it is read again from the home of the next Jenkins instance
+     * in the JVM. Saves still queued go to the file the history was loaded from.
+     */
+    @Terminator
+    public static synchronized void forget() {
+        instance = null;
+    }
+
+    @NonNull
+    private static XmlFile getConfigFile() {
+        return new XmlFile(Jenkins.XSTREAM2,
+                new File(Jenkins.get().getRootDir(), DeployedApplicationHistory.class.getName() + ".xml"));
+    }
+
+    /**
+     * Returns the digest of the artifact most recently deployed to the location.
+     *
+     * @param location the location.
+     * @return the MD5 digest of the artifact most recently deployed to the location or {@code null} if unknown.
+     */
+    @CheckForNull
+    public synchronized String getLatestDigest(@NonNull DeployedApplicationLocation location) {
+        return latest.get(location);
+    }
+
+    /**
+     * Records a deployment to a location. The history is saved in the background.
+     *
+     * @param location the location.
+     * @param digest   the MD5 digest of the deployed artifact or {@code null} to forget the location, e.g. because
+     *                 the artifact has no digest.
+     */
+    public void record(@NonNull DeployedApplicationLocation location, @CheckForNull String digest) {
+        synchronized (this) {
+            String previous = latest.remove(location);
+            if (digest == null) {
+                if (previous == null) {
+                    return;
+                }
+            } else {
+                // re-inserting moves the location to the most recently deployed end
+                latest.put(location, digest);
+                Iterator<DeployedApplicationLocation> eldest = latest.keySet().iterator();
+                while (latest.size() > Math.max(1, MAX_ENTRIES) && eldest.hasNext()) {
+                    eldest.next();
+                    eldest.remove();
+                }
+                if (digest.equals(previous)) {
+                    return;
+                }
+            }
+        }
+        RecordWriter.get().save(this);
+    }
+
+    /**
+     * Returns the number of locations remembered.
+     *
+     * @return the number of locations remembered.
+     */
+    public synchronized int size() {
+        return latest.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void save() throws IOException {
+        if (BulkChange.contains(this)) {
+            return;
+        }
+        file.write(this);
+        SaveableListener.fireOnChange(this, file);
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011-2014, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.cloudbees.plugins.deployer.records;
+
+import com.cloudbees.plugins.deployer.NamedThreadFactory;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Terminator;
+import hudson.model.Fingerprint;
+import hudson.model.Saveable;
+import hudson.util.ExceptionCatchingThreadFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves modified {@link Fingerprint} records, and other records that deployments modify such as the
+ * {@link DeployedApplicationHistory}, on a background thread so that deployments do not wait for the XML to be
+ * rewritten. Multiple modifications of the same record that are queued before the writer gets to it are coalesced
+ * into a single save. The writer outlives any one Jenkins instance in the JVM, so shutting down only flushes it.
+ */
+public final class RecordWriter {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(RecordWriter.class.getName());
+
+    /**
+     * How long to wait on shutdown for the writer thread to finish saving.
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS =
+            Long.getLong(RecordWriter.class.getName() + ".shutdownTimeoutSeconds", 30L);
+
+    /**
+     * The singleton.
+     */
+    private static final RecordWriter INSTANCE = new RecordWriter();
+
+    /**
+     * The records waiting to be saved, fingerprints keyed by their hash and anything else by itself. Holding the
+     * {@link Fingerprint} instance keeps the modified copy from being evicted from the fingerprint cache before it is
+     * saved.
+     */
+    private final Map<Object, Saveable> pending = new LinkedHashMap<Object, Saveable>();
+
+    /**
+     * Whether a drain of {@link #pending} has been submitted to the {@link #executor} and not yet finished, guarded by
+     * {@link #pending}.
+     */
+    private boolean draining;
+
+    /**
+     * The writer thread, which exits when there is nothing to write. Never shut down, as the writer is shared by
+     * every Jenkins instance that the JVM runs.
+     */
+    private final ExecutorService executor =
+            new ThreadPoolExecutor(0, 1, 5L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new NamedThreadFactory("DeployerRecordWriter",
+                            new ExceptionCatchingThreadFactory(Executors.defaultThreadFactory())));
+
+    private RecordWriter() {
+    }
+
+    /**
+     * Returns the writer.
+     *
+     * @return the writer.
+     */
+    @NonNull
+    public static RecordWriter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues the fingerprint to be saved.
+     *
+     * @param fingerprint the modified fingerprint.
+     */
+    public void save(@NonNull Fingerprint fingerprint) {
+        enqueue(fingerprint.getHashString(), fingerprint);
+    }
+
+    /**
+     * Queues a record to be saved.
+     *
+     * @param saveable the modified record.
+     */
+    public void save(@NonNull Saveable saveable) {
+        if (saveable instanceof Fingerprint) {
+            save((Fingerprint) saveable);
+        } else {
+            enqueue(saveable, saveable);
+        }
+    }
+
+    private void enqueue(@NonNull Object key, @NonNull Saveable saveable) {
+        synchronized (pending) {
+            pending.put(key, saveable);
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        try {
+            executor.submit(new Runnable() {
+                public void run() {
+                    drain();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "Could not start the record writer, saving on the calling thread", e);
+            synchronized (pending) {
+                draining = false;
+                pending.notifyAll();
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Returns the number of records waiting to be saved.
+     *
+     * @return the number of records waiting to be saved.
+     */
+    public int getQueueDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Saves all the pending records on the calling thread.
+     */
+    public void flush() {
+        List<Saveable> batch;
+        while (!(batch = takePending()).isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            List<Saveable> batch;
+            synchronized (pending) {
+                batch = takePending();
+                if (batch.isEmpty()) {
+                    draining = false;
+                    pending.notifyAll();
+                    return;
+                }
+            }
+            write(batch);
+        }
+    }
+
+    /**
+     * Waits for the writer thread to finish saving what it has taken from the pending records.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit    the unit of the timeout.
+     * @return {@code false} if the writer thread was still saving when the timeout expired.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean awaitIdle(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (pending) {
+            while (draining) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(pending, remaining);
+            }
+            return true;
+        }
+    }
+
+    @NonNull
+    private List<Saveable> takePending() {
+        synchronized (pending) {
+            List<Saveable> batch = new ArrayList<Saveable>(pending.values());
+            pending.clear();
+            return batch;
+        }
+    }
+
+    private static void write(List<Saveable> batch) {
+        LOGGER.log(Level.FINE, "Saving {0} records", batch.size());
+        for (Saveable saveable : batch) {
+            try {
+                saveable.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not save " + (saveable instanceof Fingerprint
+                        ? "fingerprint " + ((Fingerprint) saveable).getHashString()
+                        : saveable), e);
+            }
+        }
+    }
+
+    /**
+     * Make sure that nothing queued is lost on shutdown. The writer keeps running for the next Jenkins instance in
+     * the JVM, if any.
+     */
+    @Terminator
+    public static void flushOnShutdown() {
+        INSTANCE.flush();
+        try {
+            // the writer thread may be part way through saving a batch it has already taken from the pending map
+            if (!INSTANCE.awaitIdle(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.log(Level.WARNING, "Gave up waiting for fingerprints to be saved after {0}s",
+                        SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // anything queued while we were waiting
+        INSTANCE.flush();
+    }
+}
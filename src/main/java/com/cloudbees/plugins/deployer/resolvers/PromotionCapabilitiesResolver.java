@@ -180,6 +180,7 @@ public class PromotionCapabilitiesResolver extends CapabilitiesResolver {
                     if (!Engine.create(set)
                             .withCredentials(build.getProject(), ACL.SYSTEM)
                             .from(build, DeploySourceOrigin.RUN)
+                            .withTargetConcurrency(set.getTargetConcurrency())
                             .withLauncher(launcher)
                             .withListener(listener)
                             .build()
@@ -0,0 +1,96 @@
+package com.cloudbees.plugins.deployer;
+
+import com.cloudbees.plugins.deployer.hosts.DeployHost;
+import hudson.ExtensionList;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.Computer;
+import hudson.model.FreeStyleBuild;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+import hudson.security.ACL;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Calendar;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class DeployNowComputerTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void changingTheExecutorsReconfiguresTheLiveComputer() throws Exception {
+        DeployNowConfiguration.get().setExecutors(2);
+        DeployNowSlave slave = DeployNowSlave.ensurePresent();
+        Computer computer = slave.toComputer();
+        assertThat(computer.getNumExecutors(), is(2));
+
+        DeployNowConfiguration.get().setExecutors(4);
+        DeployNowComputer.RETENTION_STRATEGY.reconfigure();
+
+        Node registered = r.jenkins.getNode(slave.getNodeName());
+        assertThat(registered.getNumExecutors(), is(4));
+        // the computer is kept, so deployments in progress are not disturbed
+        assertThat(registered.toComputer(), sameInstance(computer));
+        assertThat(computer.getNumExecutors(), is(4));
+    }
+
+    @Test
+    public void ensurePresentReturnsTheRegisteredNode() throws Exception {
+        DeployNowConfiguration.get().setExecutors(1);
+        DeployNowSlave slave = DeployNowSlave.ensurePresent();
+        assertThat(r.jenkins.getNode(slave.getNodeName()), sameInstance((Node) slave));
+
+        DeployNowConfiguration.get().setExecutors(3);
+        DeployNowSlave reconfigured = DeployNowSlave.ensurePresent();
+
+        assertThat(reconfigured.getNumExecutors(), is(3));
+        assertThat(r.jenkins.getNode(slave.getNodeName()), sameInstance((Node) reconfigured));
+        assertThat(DeployNowSlave.ensurePresent(), sameInstance(reconfigured));
+    }
+
+    @Test
+    public void missedQueueEventDoesNotKeepTheNodeForever() throws Exception {
+        DeployNowConfiguration.get().setIdleMinutes(0);
+        assertThat(DeployNowComputer.PendingTasks.recount(), is(0));
+        FreeStyleBuild build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+        DeployNowTask task = new DeployNowTask(build, new DeployNowRunAction.Deployer(
+                Collections.<DeployHost<?, ?>>emptyList(), Collections.<Cause>emptyList(), ACL.SYSTEM));
+        // the task never enters the queue, as if its onLeft event had been missed
+        ExtensionList.lookup(QueueListener.class).get(DeployNowComputer.PendingTasks.class)
+                .onEnterWaiting(new Queue.WaitingItem(Calendar.getInstance(), task,
+                        Collections.<Action>emptyList()));
+        assertThat(DeployNowComputer.PendingTasks.count(), is(1));
+        DeployNowSlave slave = DeployNowSlave.ensurePresent();
+
+        DeployNowComputer.RETENTION_STRATEGY.check((DeployNowComputer) slave.toComputer());
+
+        assertThat(DeployNowComputer.PendingTasks.count(), is(0));
+        assertThat(r.jenkins.getNode(slave.getNodeName()), nullValue());
+    }
+
+    @Test
+    public void idleNodeIsKeptForTheRetentionTime() throws Exception {
+        DeployNowComputer.PendingTasks.recount();
+        DeployNowConfiguration.get().setIdleMinutes(5);
+        DeployNowSlave slave = DeployNowSlave.ensurePresent();
+        DeployNowComputer computer = (DeployNowComputer) slave.toComputer();
+
+        DeployNowComputer.RETENTION_STRATEGY.check(computer);
+        assertThat(r.jenkins.getNode(slave.getNodeName()), sameInstance((Node) slave));
+        assertThat(computer.isOffline(), is(false));
+
+        DeployNowConfiguration.get().setIdleMinutes(0);
+        DeployNowComputer.RETENTION_STRATEGY.check(computer);
+        assertThat(r.jenkins.getNode(slave.getNodeName()), nullValue());
+    }
+}
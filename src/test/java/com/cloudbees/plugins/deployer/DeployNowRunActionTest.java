@@ -1,21 +1,32 @@
 package com.cloudbees.plugins.deployer;
 
+import com.cloudbees.plugins.deployer.engines.MockEngine;
+import com.cloudbees.plugins.deployer.hosts.DeployHost;
 import com.gargoylesoftware.htmlunit.Page;
+import hudson.model.Cause;
+import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
 import hudson.model.Item;
+import hudson.model.Queue;
 import hudson.model.Result;
+import hudson.security.ACL;
 import jenkins.model.Jenkins;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
 import org.jvnet.hudson.test.MockAuthorizationStrategy;
 
 import java.io.File;
 import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 
 public class DeployNowRunActionTest {
@@ -50,6 +61,54 @@ public class DeployNowRunActionTest {
         assertThat(page.getWebResponse().getStatusCode(), is(HttpURLConnection.HTTP_OK));
     }
 
+    @Test
+    public void hostConcurrencyIsSavedWithTheOtherDefaults() throws Exception {
+        FreeStyleProject project = r.createFreeStyleProject("concurrency");
+        FreeStyleBuild build = r.buildAndAssertSuccess(project);
+        assertThat(new DeployNowRunAction(build).getHostConcurrency(), is(1));
+
+        DeployNowJobProperty property = new DeployNowJobProperty(true, null);
+        property.setHostConcurrency(3);
+        project.addProperty(property);
+        r.jenkins.reload();
+
+        project = r.jenkins.getItemByFullName("concurrency", FreeStyleProject.class);
+        assertThat(project.getProperty(DeployNowJobProperty.class).getHostConcurrency(), is(3));
+        assertThat(new DeployNowRunAction(project.getLastBuild()).getHostConcurrency(), is(3));
+    }
+
+    @Test
+    public void newRequestSupersedesPendingRequestsOfTheSameJobAndHosts() throws Exception {
+        FreeStyleProject project = r.createFreeStyleProject("coalesce");
+        FreeStyleBuild older = r.buildAndAssertSuccess(project);
+        FreeStyleBuild newer = r.buildAndAssertSuccess(project);
+        FreeStyleBuild elsewhere = r.buildAndAssertSuccess(r.createFreeStyleProject("elsewhere"));
+        List<DeployHost<?, ?>> hosts = hosts("production");
+        Queue queue = r.jenkins.getQueue();
+        // a long quiet period keeps the requests waiting in the queue
+        Queue.Item superseded = queue.schedule(task(older, hosts), 1000);
+        Queue.Item otherHosts = queue.schedule(task(older, hosts("staging")), 1000);
+        Queue.Item otherJob = queue.schedule(task(elsewhere, hosts), 1000);
+
+        newer.getAction(DeployNowRunAction.class).supersedePending(hosts("production"));
+
+        assertThat(queue.contains(superseded.task), is(false));
+        assertThat(queue.contains(otherHosts.task), is(true));
+        assertThat(queue.contains(otherJob.task), is(true));
+        assertThat(FileUtils.readFileToString(older.getAction(DeployNowRunAction.class).getLogFile()),
+                containsString("Superseded by a newer deployment request for"));
+        queue.clear();
+    }
+
+    private static List<DeployHost<?, ?>> hosts(String target) {
+        return Collections.<DeployHost<?, ?>>singletonList(new MockEngine.Host(new MockEngine.Target(target, 0)));
+    }
+
+    private static DeployNowTask task(FreeStyleBuild build, List<DeployHost<?, ?>> hosts) {
+        return new DeployNowTask(build, new DeployNowRunAction.Deployer(hosts,
+                Collections.<Cause>singletonList(new DeployNowCause()), ACL.SYSTEM));
+    }
+
     @Before
     public void setUpAuthorization() {
         r.jenkins.setSecurityRealm(r.createDummySecurityRealm());
@@ -57,4 +116,8 @@ public class DeployNowRunActionTest {
                 .grant(Jenkins.ADMINISTER, DeployNowRunAction.DEPLOY).everywhere().to("admin")
                 .grant(Jenkins.READ, Item.READ).everywhere().to("user"));
     }
+
+    @TestExtension
+    public static class MockEngineDescriptor extends MockEngine.Factory.DescriptorImpl {
+    }
 }
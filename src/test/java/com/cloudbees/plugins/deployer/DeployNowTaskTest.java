@@ -0,0 +1,125 @@
+package com.cloudbees.plugins.deployer;
+
+import com.cloudbees.plugins.deployer.engines.MockEngine;
+import com.cloudbees.plugins.deployer.hosts.DeployHost;
+import hudson.model.Cause;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ResourceList;
+import hudson.security.ACL;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class DeployNowTaskTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private FreeStyleProject project;
+
+    @Before
+    public void setUp() throws Exception {
+        MockEngine.reset();
+        project = r.createFreeStyleProject();
+    }
+
+    private FreeStyleBuild build() throws Exception {
+        FreeStyleBuild build = r.buildAndAssertSuccess(project);
+        FileUtils.writeStringToFile(new File(build.getArtifactsDir(), MockEngine.ARTIFACT), "application");
+        return build;
+    }
+
+    private static DeployNowTask task(FreeStyleBuild build, MockEngine.Host host) {
+        return new DeployNowTask(build, new DeployNowRunAction.Deployer(
+                Collections.<DeployHost<?, ?>>singletonList(host),
+                Collections.<Cause>singletonList(new DeployNowCause()), ACL.SYSTEM));
+    }
+
+    private static void await(DeployNowRunAction action, boolean deploying) throws InterruptedException {
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (action.isDeploying() != deploying && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+        assertThat(action.isDeploying(), is(deploying));
+    }
+
+    @Test
+    public void deploymentsOfTheSameBuildDoNotOverlap() throws Exception {
+        FreeStyleBuild build = build();
+        FreeStyleBuild other = build();
+        r.jenkins.getQueue().schedule(task(build, new MockEngine.Host(new MockEngine.Target("slow", 3000))), 0);
+        DeployNowRunAction action = build.getAction(DeployNowRunAction.class);
+        await(action, true);
+
+        DeployNowTask again = task(build, new MockEngine.Host(new MockEngine.Target("again", 0)));
+        assertThat(again.getCauseOfBlockage().getShortDescription(),
+                containsString("Waiting for the deployment of " + build.getFullDisplayName()));
+        assertThat(task(other, new MockEngine.Host(new MockEngine.Target("other", 0))).getCauseOfBlockage(),
+                nullValue());
+
+        await(action, false);
+        // the executor lets go of the finished task shortly after the deployment ends
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (again.getCauseOfBlockage() != null && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+        assertThat(again.getCauseOfBlockage(), nullValue());
+    }
+
+    private static MockEngine.Host host(String endpoint, int limit, MockEngine.Target... targets) {
+        return new MockEngine.Host(Arrays.asList(targets), 1, endpoint, limit);
+    }
+
+    @Test
+    public void deploymentsToTheSameEndpointShareItsLimit() throws Exception {
+        FreeStyleBuild build = build();
+        ResourceList one = task(build, host("endpoint", 1, new MockEngine.Target("a", 0))).getResourceList();
+        ResourceList two = task(build, host("endpoint", 1, new MockEngine.Target("b", 0))).getResourceList();
+        assertThat(one.isCollidingWith(two), is(true));
+
+        ResourceList first = task(build, host("endpoint", 2, new MockEngine.Target("a", 0))).getResourceList();
+        ResourceList second = task(build, host("endpoint", 2, new MockEngine.Target("b", 0))).getResourceList();
+        ResourceList third = task(build, host("endpoint", 2, new MockEngine.Target("c", 0))).getResourceList();
+        assertThat(first.isCollidingWith(second), is(false));
+        assertThat(ResourceList.union(first, second).isCollidingWith(third), is(true));
+
+        ResourceList elsewhere = task(build, host("elsewhere", 1, new MockEngine.Target("d", 0))).getResourceList();
+        ResourceList unlimited = task(build, host(null, 1, new MockEngine.Target("e", 0))).getResourceList();
+        assertThat(one.isCollidingWith(elsewhere), is(false));
+        assertThat(one.isCollidingWith(unlimited), is(false));
+    }
+
+    @Test
+    public void queueRunsOneDeploymentAtATimeToASingleUseEndpoint() throws Exception {
+        DeployNowConfiguration.get().setExecutors(2);
+        FreeStyleBuild build = build();
+        FreeStyleBuild other = build();
+        r.jenkins.getQueue().schedule(task(build, host("endpoint", 1, new MockEngine.Target("a", 500))), 0);
+        r.jenkins.getQueue().schedule(task(other, host("endpoint", 1, new MockEngine.Target("b", 500))), 0);
+
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while ((MockEngine.getInvocations() < 2 || MockEngine.getActive() > 0) && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+        assertThat(MockEngine.getInvocations(), is(2));
+        assertThat(MockEngine.getMaxActive(), is(1));
+    }
+
+    @TestExtension
+    public static class MockEngineDescriptor extends MockEngine.Factory.DescriptorImpl {
+    }
+}
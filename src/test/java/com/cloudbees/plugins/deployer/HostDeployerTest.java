@@ -0,0 +1,147 @@
+package com.cloudbees.plugins.deployer;
+
+import com.cloudbees.plugins.deployer.engines.MockEngine;
+import com.cloudbees.plugins.deployer.hosts.DeployHost;
+import com.cloudbees.plugins.deployer.targets.DeployTarget;
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.fail;
+
+public class HostDeployerTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private static MockEngine.Host host(final String name) {
+        return new MockEngine.Host(Collections.<MockEngine.Target>emptyList(), 1, null, 1) {
+            @Override
+            public String getDisplayName() {
+                return name;
+            }
+        };
+    }
+
+    @Test
+    public void prefixesEachLineWithTheHostWhenDeployingConcurrently() throws Throwable {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        StreamBuildListener listener = new StreamBuildListener(log, Charset.defaultCharset());
+        // both hosts must be running at once for their lines to be able to interleave
+        final CountDownLatch running = new CountDownLatch(2);
+
+        boolean success = new HostDeployer(2) {
+            @Override
+            protected boolean deploy(DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set,
+                                     BuildListener listener) throws Throwable {
+                running.countDown();
+                running.await(10, TimeUnit.SECONDS);
+                for (int i = 0; i < 100; i++) {
+                    listener.getLogger().println("line " + i + " of " + set.getDisplayName());
+                }
+                // an unterminated last line is still prefixed
+                listener.getLogger().print("done with " + set.getDisplayName());
+                return true;
+            }
+        }.perform(Arrays.asList(host("alpha"), host("beta")), listener);
+
+        assertThat(success, is(true));
+        List<String> lines = Arrays.asList(log.toString().split("\\r?\\n"));
+        assertThat(lines.get(0), containsString("Deploying to 2 hosts with up to 2 concurrently"));
+        assertThat(lines.size(), is(1 + 2 * 101));
+        for (String line : lines.subList(1, lines.size())) {
+            String name = line.contains("alpha") ? "alpha" : "beta";
+            assertThat(line, startsWith("[" + name + "] "));
+        }
+    }
+
+    @Test
+    public void failedHostDoesNotStopTheOthersAndIsRethrown() throws Throwable {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        StreamBuildListener listener = new StreamBuildListener(log, Charset.defaultCharset());
+
+        try {
+            new HostDeployer(2) {
+                @Override
+                protected boolean deploy(DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set,
+                                         BuildListener listener) throws Throwable {
+                    if ("alpha".equals(set.getDisplayName())) {
+                        throw new IllegalStateException("alpha is broken");
+                    }
+                    Thread.sleep(200);
+                    listener.getLogger().println("deployed");
+                    return true;
+                }
+            }.perform(Arrays.asList(host("alpha"), host("beta")), listener);
+            fail("The failure of alpha should have been rethrown as when deploying one host at a time");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("alpha is broken"));
+        }
+        assertThat(log.toString(), containsString("[beta] deployed"));
+    }
+
+    @Test
+    public void interruptWaitsForTheHostsInProgress() throws Throwable {
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final StreamBuildListener listener = new StreamBuildListener(log, Charset.defaultCharset());
+        final AtomicInteger active = new AtomicInteger();
+        final CountDownLatch running = new CountDownLatch(2);
+        final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+        Thread thread = new Thread("interruptWaitsForTheHostsInProgress") {
+            @Override
+            public void run() {
+                try {
+                    new HostDeployer(2) {
+                        @Override
+                        protected boolean deploy(
+                                DeployHost<? extends DeployHost<?, ?>, ? extends DeployTarget<?>> set,
+                                BuildListener listener) throws Throwable {
+                            active.incrementAndGet();
+                            try {
+                                running.countDown();
+                                Thread.sleep(10000);
+                                return true;
+                            } catch (InterruptedException e) {
+                                // an engine cleaning up after being interrupted
+                                Thread.sleep(200);
+                                listener.getLogger().println("stopped");
+                                throw e;
+                            } finally {
+                                active.decrementAndGet();
+                            }
+                        }
+                    }.perform(Arrays.asList(host("alpha"), host("beta")), listener);
+                } catch (Throwable t) {
+                    thrown.set(t);
+                }
+            }
+        };
+        thread.start();
+        assertThat(running.await(10, TimeUnit.SECONDS), is(true));
+
+        thread.interrupt();
+        thread.join(10000);
+
+        assertThat(thrown.get(), instanceOf(InterruptedException.class));
+        assertThat(active.get(), is(0));
+        assertThat(log.toString(), containsString("[alpha] stopped"));
+        assertThat(log.toString(), containsString("[beta] stopped"));
+    }
+}
@@ -0,0 +1,54 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class DeployWatchdogTest {
+
+    @After
+    public void clearInterrupt() {
+        Thread.interrupted();
+    }
+
+    @Test
+    public void clearsItsOwnInterrupt() throws Exception {
+        DeployWatchdog watchdog = DeployWatchdog.start(TimeUnit.MILLISECONDS.toNanos(50), "timed out");
+        try {
+            Thread.sleep(10000);
+            fail("The watchdog should have interrupted the sleep");
+        } catch (InterruptedException e) {
+            // well behaved code restores the interrupt
+            Thread.currentThread().interrupt();
+        }
+        assertThat(watchdog.finish(), is(true));
+        assertThat(watchdog.isInterruptDelivered(), is(true));
+        assertThat(Thread.interrupted(), is(false));
+    }
+
+    @Test
+    public void keepsAnInterruptItDidNotDeliver() throws Exception {
+        Thread.currentThread().interrupt();
+        DeployWatchdog watchdog = DeployWatchdog.start(TimeUnit.MILLISECONDS.toNanos(50), "timed out");
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!watchdog.isTimedOut() && System.nanoTime() < giveUp) {
+            Thread.yield();
+        }
+        assertThat(watchdog.finish(), is(true));
+        assertThat(watchdog.isInterruptDelivered(), is(false));
+        assertThat(Thread.interrupted(), is(true));
+    }
+
+    @Test
+    public void finishingBeforeTheDeadlineLeavesTheThreadAlone() throws Exception {
+        DeployWatchdog watchdog = DeployWatchdog.start(TimeUnit.SECONDS.toNanos(10), "timed out");
+        assertThat(watchdog.finish(), is(false));
+        Thread.sleep(100);
+        assertThat(Thread.interrupted(), is(false));
+    }
+}
@@ -0,0 +1,97 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import hudson.Util;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class DigestCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void secondLookupIsAHit() throws Exception {
+        DigestCache cache = new DigestCache(10, null);
+        File file = tmp.newFile();
+        FileUtils.writeStringToFile(file, "hello world");
+        assertThat(cache.getDigest(file), is(Util.getDigestOf(file)));
+        assertThat(cache.getDigest(file), is(Util.getDigestOf(file)));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void modifiedFileIsAMiss() throws Exception {
+        DigestCache cache = new DigestCache(10, null);
+        File file = tmp.newFile();
+        FileUtils.writeStringToFile(file, "hello world");
+        cache.getDigest(file);
+        FileUtils.writeStringToFile(file, "goodbye world");
+        file.setLastModified(file.lastModified() + 2000);
+        assertThat(cache.lookup(file), nullValue());
+        assertThat(cache.getDigest(file), is(Util.getDigestOf(file)));
+        assertThat(cache.getMissCount(), is(2L));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        DigestCache cache = new DigestCache(2, null);
+        File a = tmp.newFile();
+        File b = tmp.newFile();
+        File c = tmp.newFile();
+        FileUtils.writeStringToFile(a, "a");
+        FileUtils.writeStringToFile(b, "b");
+        FileUtils.writeStringToFile(c, "c");
+        cache.getDigest(a);
+        cache.getDigest(b);
+        cache.getDigest(a);
+        cache.getDigest(c);
+        assertThat(cache.size(), is(2));
+        assertThat(cache.lookup(b), nullValue());
+        assertThat(cache.lookup(a), is(Util.getDigestOf(a)));
+    }
+
+    @Test
+    public void reportsWhetherTheDigestWasCached() throws Exception {
+        DigestCache cache = new DigestCache(10, null);
+        File file = tmp.newFile();
+        FileUtils.writeStringToFile(file, "hello world");
+        assertThat(cache.resolve(file).isCached(), is(false));
+        DigestCache.Result result = cache.resolve(file);
+        assertThat(result.isCached(), is(true));
+        assertThat(result.getDigest(), is(Util.getDigestOf(file)));
+    }
+
+    @Test
+    public void entriesSurviveARestartOfTheNode() throws Exception {
+        File store = new File(tmp.newFolder(), "digests.txt");
+        File file = tmp.newFile("with spaces.war");
+        FileUtils.writeStringToFile(file, "hello world");
+        new DigestCache(10, store).getDigest(file);
+
+        DigestCache restarted = new DigestCache(10, store);
+        assertThat(restarted.size(), is(1));
+        DigestCache.Result result = restarted.resolve(file);
+        assertThat(result.isCached(), is(true));
+        assertThat(result.getDigest(), is(Util.getDigestOf(file)));
+    }
+
+    @Test
+    public void corruptEntriesAreSkipped() throws Exception {
+        File store = tmp.newFile();
+        File file = tmp.newFile();
+        FileUtils.writeStringToFile(file, "hello world");
+        FileUtils.writeStringToFile(store, "garbage\nabc not-a-length 0 " + file.getCanonicalPath() + "\n");
+        DigestCache cache = new DigestCache(10, store);
+        assertThat(cache.size(), is(0));
+        assertThat(cache.resolve(file).isCached(), is(false));
+    }
+}
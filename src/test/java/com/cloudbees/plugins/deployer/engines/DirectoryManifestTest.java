@@ -0,0 +1,82 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class DirectoryManifestTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void noPreviousManifestTransfersEverything() throws Exception {
+        File dir = tmp.newFolder();
+        FileUtils.writeStringToFile(new File(dir, "index.html"), "index");
+        FileUtils.writeStringToFile(new File(dir, "css/site.css"), "css");
+        DirectoryManifest.Delta delta = DirectoryManifest.of(dir).diff(null);
+        assertThat(delta.isFull(), is(true));
+        assertThat(delta.getTransfers(), is(Arrays.asList("css/site.css", "index.html")));
+    }
+
+    @Test
+    public void onlyChangesAreTransferred() throws Exception {
+        File dir = tmp.newFolder();
+        FileUtils.writeStringToFile(new File(dir, "index.html"), "index");
+        FileUtils.writeStringToFile(new File(dir, "css/site.css"), "css");
+        FileUtils.writeStringToFile(new File(dir, "js/old.js"), "old");
+        DirectoryManifest previous = DirectoryManifest.of(dir);
+        FileUtils.writeStringToFile(new File(dir, "index.html"), "new index");
+        FileUtils.forceDelete(new File(dir, "js/old.js"));
+        FileUtils.writeStringToFile(new File(dir, "js/new.js"), "new");
+        DirectoryManifest.Delta delta = DirectoryManifest.of(dir).diff(previous);
+        assertThat(delta.isFull(), is(false));
+        assertThat(delta.getAdded(), is(Collections.singletonList("js/new.js")));
+        assertThat(delta.getChanged(), is(Collections.singletonList("index.html")));
+        assertThat(delta.getDeleted(), is(Collections.singletonList("js/old.js")));
+    }
+
+    @Test
+    public void unchangedDirectoryHasEmptyDelta() throws Exception {
+        File dir = tmp.newFolder();
+        FileUtils.writeStringToFile(new File(dir, "index.html"), "index");
+        assertThat(DirectoryManifest.of(dir).diff(DirectoryManifest.of(dir)).isEmpty(), is(true));
+    }
+
+    @Test
+    public void symbolicLinkBackUpTheTreeIsNotFollowed() throws Exception {
+        File dir = tmp.newFolder();
+        FileUtils.writeStringToFile(new File(dir, "sub/index.html"), "index");
+        try {
+            Files.createSymbolicLink(new File(dir, "sub/loop").toPath(), dir.toPath());
+        } catch (UnsupportedOperationException e) {
+            Assume.assumeNoException(e);
+        } catch (IOException e) {
+            // e.g. creating links needs a privilege on Windows
+            Assume.assumeNoException(e);
+        }
+        assertThat(DirectoryManifest.of(dir).getPaths(), is(Collections.singletonList("sub/index.html")));
+    }
+
+    @Test
+    public void scanningDoesNotFillTheDigestCache() throws Exception {
+        File dir = tmp.newFolder();
+        for (int i = 0; i < 10; i++) {
+            FileUtils.writeStringToFile(new File(dir, "file" + i + ".txt"), "content " + i);
+        }
+        int cached = DigestCache.get().size();
+        assertThat(DirectoryManifest.of(dir).size(), is(10));
+        assertThat(DigestCache.get().size(), is(cached));
+    }
+}
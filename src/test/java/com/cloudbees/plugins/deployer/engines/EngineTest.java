@@ -0,0 +1,373 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import com.cloudbees.plugins.deployer.DeployEvent;
+import com.cloudbees.plugins.deployer.DeployListener;
+import com.cloudbees.plugins.deployer.DeployMetrics;
+import com.cloudbees.plugins.deployer.exceptions.DeployException;
+import com.cloudbees.plugins.deployer.hosts.DeployHost;
+import com.cloudbees.plugins.deployer.records.DeployedApplicationAction;
+import com.cloudbees.plugins.deployer.records.DeployedApplicationHistory;
+import com.cloudbees.plugins.deployer.records.DeployedApplicationLocation;
+import com.cloudbees.plugins.deployer.records.RecordWriter;
+import com.cloudbees.plugins.deployer.sources.DeploySourceOrigin;
+import com.cloudbees.plugins.deployer.targets.DeployTarget;
+import hudson.Util;
+import hudson.model.Fingerprint;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.StreamBuildListener;
+import hudson.tasks.Fingerprinter;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class EngineTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private FreeStyleBuild build;
+
+    private ByteArrayOutputStream log;
+
+    private StreamBuildListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        MockEngine.reset();
+        r.jenkins.getExtensionList(DeployListener.class).get(RecordingListener.class).clear();
+        FreeStyleProject project = r.createFreeStyleProject();
+        build = r.buildAndAssertSuccess(project);
+        FileUtils.writeStringToFile(new File(build.getArtifactsDir(), MockEngine.ARTIFACT), "application");
+        log = new ByteArrayOutputStream();
+        listener = new StreamBuildListener(log, Charset.defaultCharset());
+    }
+
+    private EngineFactory<MockEngine.Host, MockEngine.Target> factory(int targetConcurrency,
+                                                                      MockEngine.Target... targets) {
+        return new MockEngine.Factory(new MockEngine.Host(Arrays.asList(targets), targetConcurrency, null, 1))
+                .from(build, DeploySourceOrigin.RUN)
+                .withLauncher(r.jenkins.createLauncher(listener))
+                .withListener(listener);
+    }
+
+    @Test
+    public void deploysTargetsConcurrentlyUpToTheCap() throws Throwable {
+        factory(2,
+                new MockEngine.Target("a", 500),
+                new MockEngine.Target("b", 500),
+                new MockEngine.Target("c", 500),
+                new MockEngine.Target("d", 500)).build().perform();
+
+        assertThat(MockEngine.getInvocations(), is(4));
+        assertThat(MockEngine.getMaxActive(), is(2));
+        assertThat(build.getActions(DeployedApplicationAction.class), hasSize(4));
+        assertThat(log.toString(), containsString("Deploying 4 applications with up to 2 concurrently"));
+    }
+
+    @Test
+    public void recordsEachLocationOnceWhenTargetsCompleteConcurrently() throws Throwable {
+        factory(4,
+                new MockEngine.Target("a", "mock://shared", 200, false),
+                new MockEngine.Target("b", "mock://shared", 200, false),
+                new MockEngine.Target("c", "mock://shared", 200, false),
+                new MockEngine.Target("d", "mock://other", 200, false)).build().perform();
+
+        assertThat(MockEngine.getMaxActive(), greaterThan(1));
+        assertThat(build.getActions(DeployedApplicationAction.class), hasSize(2));
+    }
+
+    @Test
+    public void failureSkipsTargetsNotYetStarted() throws Throwable {
+        try {
+            factory(2,
+                    new MockEngine.Target("a", "mock://a", 200, true),
+                    new MockEngine.Target("b", 1000),
+                    new MockEngine.Target("c", 1000),
+                    new MockEngine.Target("d", 1000)).build().perform();
+            fail("Failure of target a should have been rethrown");
+        } catch (DeployException e) {
+            assertThat(e.getMessage(), containsString("Failed to deploy a"));
+        }
+        // b was already running when a failed, c and d never started
+        assertThat(MockEngine.getInvocations(), is(2));
+        assertThat(log.toString(), containsString("Skipping c as an earlier deployment failed"));
+    }
+
+    @Test
+    public void deploysOneAtATimeOnTheCallingThread() throws Throwable {
+        factory(1,
+                new MockEngine.Target("one", 10),
+                new MockEngine.Target("two", 10)).build().perform();
+
+        assertThat(MockEngine.getInvocations(), is(2));
+        assertThat(MockEngine.getThreads(), is(Collections.singleton(Thread.currentThread().getName())));
+    }
+
+    @Test
+    public void interruptWaitsForTheDeploymentsInProgress() throws Throwable {
+        final Engine<MockEngine.Host, MockEngine.Target> engine = factory(2,
+                new MockEngine.Target("x", 10000),
+                new MockEngine.Target("y", 10000)).build();
+        final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+        Thread thread = new Thread("interruptWaitsForTheDeploymentsInProgress") {
+            @Override
+            public void run() {
+                try {
+                    engine.perform();
+                } catch (Throwable t) {
+                    thrown.set(t);
+                }
+            }
+        };
+        thread.start();
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (MockEngine.getActive() < 2 && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+        assertThat(MockEngine.getActive(), is(2));
+
+        thread.interrupt();
+        thread.join(10000);
+
+        assertThat(thrown.get(), instanceOf(InterruptedException.class));
+        assertThat(MockEngine.getActive(), is(0));
+    }
+
+    @Test
+    public void skipsArtifactAlreadyDeployedToTheLocation() throws Throwable {
+        File artifact = new File(build.getArtifactsDir(), MockEngine.ARTIFACT);
+        // keep a reference so that the facets added by the first deployment stay in the fingerprint cache
+        Fingerprint fingerprint = r.jenkins.getFingerprintMap()
+                .getOrCreate(build, MockEngine.ARTIFACT, Util.getDigestOf(artifact));
+        MockEngine.Target target = new MockEngine.Target("skip", 0);
+
+        factory(1, target).withSkipUnchanged(true).build().perform();
+        factory(1, target).withSkipUnchanged(true).build().perform();
+
+        RecordingListener recorder = r.jenkins.getExtensionList(DeployListener.class).get(RecordingListener.class);
+        assertThat(MockEngine.getInvocations(), is(1));
+        assertThat(recorder.succeeded, is((List<String>) Arrays.asList("skip")));
+        assertThat(recorder.skipped, is((List<String>) Arrays.asList("skip")));
+        assertThat(log.toString(), containsString("Skipping deployment as " + fingerprint.getDisplayName()));
+    }
+
+    @Test
+    public void redeploysWhenSkipUnchangedIsOff() throws Throwable {
+        MockEngine.Target target = new MockEngine.Target("always", 0);
+
+        factory(1, target).build().perform();
+        factory(1, target).build().perform();
+
+        assertThat(MockEngine.getInvocations(), is(2));
+        assertThat(DeployedApplicationHistory.get().getLatestDigest(new MockEngine.Location("mock://always")),
+                nullValue());
+    }
+
+    @Test
+    public void listenersSeeEveryPhaseTimed() throws Throwable {
+        factory(1, new MockEngine.Target("timed", 10)).build().perform();
+
+        RecordingListener recorder = r.jenkins.getExtensionList(DeployListener.class).get(RecordingListener.class);
+        assertThat(recorder.recordActionNanos, hasSize(1));
+        assertThat(recorder.recordActionNanos.get(0), greaterThan(0L));
+        DeployMetrics metrics = recorder.events.get(0).getMetrics();
+        assertThat(metrics.getNanos(DeployMetrics.Phase.TRANSFER), greaterThan(0L));
+        assertThat(metrics.getNanos(DeployMetrics.Phase.RECORD_FACETS), greaterThan(0L));
+        assertThat(metrics.getAttempts(), is(1));
+    }
+
+    @Test
+    public void slowTargetTimesOutWithoutLeakingTheInterrupt() throws Throwable {
+        try {
+            factory(1, new MockEngine.Target("slow", 10000))
+                    .withTargetTimeout(200, TimeUnit.MILLISECONDS)
+                    .build().perform();
+            fail("The slow target should have timed out");
+        } catch (DeployException e) {
+            assertThat(e.getMessage(), containsString("Deployment of slow timed out after 200ms"));
+        }
+        assertThat(Thread.currentThread().isInterrupted(), is(false));
+        assertThat(MockEngine.getActive(), is(0));
+    }
+
+    @Test
+    public void usesTheDigestRecordedByTheBuildWithoutRehashing() throws Throwable {
+        // not the digest of the artifact, so that any rehash would show in the history
+        String recorded = "0123456789abcdef0123456789abcdef";
+        build.addAction(new Fingerprinter.FingerprintAction(build,
+                Collections.singletonMap(MockEngine.ARTIFACT, recorded)));
+
+        factory(1, new MockEngine.Target("recorded", 0)).withSkipUnchanged(true).build().perform();
+
+        assertThat(log.toString(),
+                containsString("Using digest " + recorded + " from the build's fingerprint records"));
+        assertThat(log.toString(), not(containsString("node digest cache")));
+        assertThat(DeployedApplicationHistory.get().getLatestDigest(new MockEngine.Location("mock://recorded")),
+                is(recorded));
+    }
+
+    @Test
+    public void hashesArtifactsTheBuildDidNotRecord() throws Throwable {
+        File artifact = new File(build.getArtifactsDir(), MockEngine.ARTIFACT);
+        build.addAction(new Fingerprinter.FingerprintAction(build,
+                Collections.singletonMap("other.war", "0123456789abcdef0123456789abcdef")));
+
+        factory(1, new MockEngine.Target("unrecorded", 0)).withSkipUnchanged(true).build().perform();
+
+        assertThat(log.toString(), not(containsString("from the build's fingerprint records")));
+        assertThat(log.toString(), containsString("node digest cache"));
+        assertThat(DeployedApplicationHistory.get().getLatestDigest(new MockEngine.Location("mock://unrecorded")),
+                is(Util.getDigestOf(artifact)));
+    }
+
+    @Test
+    public void deltaDeploymentRoundTripsTheManifest() throws Throwable {
+        File app = new File(build.getArtifactsDir(), MockEngine.ARTIFACT);
+        FileUtils.forceDelete(app);
+        FileUtils.writeStringToFile(new File(app, "index.html"), "hello");
+        FileUtils.writeStringToFile(new File(app, "WEB-INF/web.xml"), "<web-app/>");
+        MockEngine.Target target = new MockEngine.Target("exploded", 0);
+        MockEngine.Location location = new MockEngine.Location("mock://exploded");
+
+        factory(1, target).build().perform();
+        FileUtils.writeStringToFile(new File(app, "index.html"), "hello again");
+        factory(1, target).build().perform();
+        // wait for the manifest to be written so that it is read back from disk
+        RecordWriter.flushOnShutdown();
+
+        List<DirectoryManifest.Delta> deltas = MockEngine.getDeltas();
+        assertThat(deltas, hasSize(2));
+        assertThat(deltas.get(0).isFull(), is(true));
+        assertThat(deltas.get(1).isFull(), is(false));
+        assertThat(deltas.get(1).getTransfers(), is(Collections.singletonList("index.html")));
+        assertThat(deltas.get(1).getDeleted(), is(Collections.<String>emptyList()));
+        assertThat(DirectoryManifestStore.get().load(location), is(DirectoryManifest.of(app)));
+        assertThat(log.toString(), containsString("Recorded manifest of 2 files deployed to mock://exploded"));
+    }
+
+    @Test
+    public void sessionIsOpenedOnceAndClosedOnceWhenDeployingOneAtATime() throws Throwable {
+        factory(1,
+                new MockEngine.Target("one", 10),
+                new MockEngine.Target("two", 10)).build().perform();
+
+        assertThat(MockEngine.getSessions(), hasSize(1));
+        assertThat(MockEngine.getSessions().get(0).getCloses(), is(1));
+    }
+
+    @Test
+    public void sessionIsSharedByConcurrentTargetsAndClosedAfterTheLast() throws Throwable {
+        factory(4,
+                new MockEngine.Target("a", 200),
+                new MockEngine.Target("b", 300),
+                new MockEngine.Target("c", 400),
+                new MockEngine.Target("d", 500)).build().perform();
+
+        assertThat(MockEngine.getMaxActive(), greaterThan(1));
+        assertThat(MockEngine.getSessions(), hasSize(1));
+        MockEngine.Session session = MockEngine.getSessions().get(0);
+        assertThat(session.getCloses(), is(1));
+        assertThat(session.isClosedInUse(), is(false));
+    }
+
+    @Test
+    public void sessionIsClosedOnceAfterAFailedTarget() throws Throwable {
+        try {
+            factory(2,
+                    new MockEngine.Target("a", "mock://a", 100, true),
+                    new MockEngine.Target("b", 1000),
+                    new MockEngine.Target("c", 1000)).build().perform();
+            fail("Failure of target a should have been rethrown");
+        } catch (DeployException e) {
+            assertThat(e.getMessage(), containsString("Failed to deploy a"));
+        }
+
+        assertThat(MockEngine.getSessions(), hasSize(1));
+        MockEngine.Session session = MockEngine.getSessions().get(0);
+        assertThat(session.getCloses(), is(1));
+        // b was still deploying when a failed
+        assertThat(session.isClosedInUse(), is(false));
+    }
+
+    @Test
+    public void sessionIsClosedOnceAfterTheTargetsAreCancelled() throws Throwable {
+        List<CompletableFuture<DeployedApplicationLocation>> futures = factory(2,
+                new MockEngine.Target("x", 10000),
+                new MockEngine.Target("y", 10000),
+                new MockEngine.Target("z", 10000)).build().performAsync();
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (MockEngine.getActive() < 2 && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+        for (CompletableFuture<DeployedApplicationLocation> future : futures) {
+            future.cancel(true);
+        }
+        giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (MockEngine.getSessions().get(0).getCloses() == 0 && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+
+        assertThat(MockEngine.getActive(), is(0));
+        assertThat(MockEngine.getSessions(), hasSize(1));
+        MockEngine.Session session = MockEngine.getSessions().get(0);
+        assertThat(session.getCloses(), is(1));
+        assertThat(session.isClosedInUse(), is(false));
+    }
+
+    @TestExtension
+    public static class RecordingListener extends DeployListener {
+        final List<String> succeeded = new CopyOnWriteArrayList<String>();
+        final List<String> skipped = new CopyOnWriteArrayList<String>();
+        final List<DeployEvent> events = new CopyOnWriteArrayList<DeployEvent>();
+        final List<Long> recordActionNanos = new CopyOnWriteArrayList<Long>();
+
+        void clear() {
+            succeeded.clear();
+            skipped.clear();
+            events.clear();
+            recordActionNanos.clear();
+        }
+
+        @Override
+        public <S extends DeployHost<S, T>, T extends DeployTarget<T>> void onSuccess(DeployHost<S, T> host,
+                                                                                      DeployTarget<T> target,
+                                                                                      DeployEvent event) {
+            succeeded.add(target.getDisplayName());
+            events.add(event);
+            recordActionNanos.add(event.getMetrics().getNanos(DeployMetrics.Phase.RECORD_ACTION));
+        }
+
+        @Override
+        public <S extends DeployHost<S, T>, T extends DeployTarget<T>> void onSkipped(DeployHost<S, T> host,
+                                                                                      DeployTarget<T> target,
+                                                                                      DeployEvent event) {
+            skipped.add(target.getDisplayName());
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class HttpChunkedUploadTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private Receiver receiver;
+
+    @Before
+    public void startServer() throws IOException {
+        receiver = new Receiver();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/upload", receiver);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private URL url() throws IOException {
+        return new URL("http://localhost:" + server.getAddress().getPort() + "/upload");
+    }
+
+    private File newFile(int length) throws IOException {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        File file = tmp.newFile();
+        FileUtils.writeByteArrayToFile(file, content);
+        return file;
+    }
+
+    @Test
+    public void uploadsInChunks() throws Exception {
+        File file = newFile(10000);
+        HttpChunkedUpload upload = new HttpChunkedUpload(url(), file, 4096);
+        upload.upload();
+        assertThat(upload.isComplete(), is(true));
+        assertThat(upload.getChunksSent(), is(3));
+        assertThat(Arrays.equals(receiver.content(), FileUtils.readFileToByteArray(file)), is(true));
+    }
+
+    @Test
+    public void resumesFromLastAcknowledgedChunk() throws Exception {
+        File file = newFile(10000);
+        receiver.failChunk = 2;
+        HttpChunkedUpload upload = new HttpChunkedUpload(url(), file, 4096);
+        upload.upload(new RetryPolicy(3, 0L, 0L, 0.0));
+        assertThat(upload.isComplete(), is(true));
+        assertThat(receiver.offsets, is(Arrays.asList(0L, 4096L, 4096L, 8192L)));
+        assertThat(Arrays.equals(receiver.content(), FileUtils.readFileToByteArray(file)), is(true));
+    }
+
+    @Test
+    public void newUploadResumesFromReceiver() throws Exception {
+        File file = newFile(10000);
+        receiver.failChunk = 2;
+        try {
+            new HttpChunkedUpload(url(), file, 4096).upload();
+        } catch (IOException e) {
+            // expected
+        }
+        HttpChunkedUpload upload = new HttpChunkedUpload(url(), file, 4096);
+        upload.upload();
+        assertThat(upload.getChunksSent(), is(2));
+        assertThat(Arrays.equals(receiver.content(), FileUtils.readFileToByteArray(file)), is(true));
+    }
+
+    /**
+     * A stand-in for a receiver implementing the resumable upload convention.
+     */
+    private static class Receiver implements HttpHandler {
+        private static final Pattern RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private final List<Long> offsets = new ArrayList<Long>();
+        private int failChunk = -1;
+
+        synchronized byte[] content() {
+            return received.toByteArray();
+        }
+
+        public synchronized void handle(HttpExchange exchange) throws IOException {
+            byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+            String contentRange = exchange.getRequestHeaders().getFirst("Content-Range");
+            Matcher matcher = RANGE.matcher(contentRange);
+            if (matcher.matches()) {
+                long first = Long.parseLong(matcher.group(1));
+                long total = Long.parseLong(matcher.group(3));
+                offsets.add(first);
+                if (offsets.size() == failChunk) {
+                    reply(exchange, 503);
+                    return;
+                }
+                if (first == received.size()) {
+                    received.write(body);
+                }
+                if (received.size() == total) {
+                    reply(exchange, 201);
+                    return;
+                }
+            }
+            if (received.size() > 0) {
+                exchange.getResponseHeaders().add("Range", "bytes=0-" + (received.size() - 1));
+            }
+            reply(exchange, HttpChunkedUpload.RESUME_INCOMPLETE);
+        }
+
+        private void reply(HttpExchange exchange, int status) throws IOException {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.is;
+
+public class LocalTransferTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void copiesByChannelAndReplacesDestination() throws Exception {
+        File source = tmp.newFile("app.war");
+        FileUtils.writeStringToFile(source, "new");
+        File dir = tmp.newFolder("deploy");
+        File dest = new File(dir, "app.war");
+        FileUtils.writeStringToFile(dest, "old contents");
+
+        assertThat(LocalTransfer.transfer(source, dest), is(LocalTransfer.Method.CHANNEL));
+        assertThat(FileUtils.readFileToString(dest), is("new"));
+        assertThat(dir.listFiles(), arrayWithSize(1));
+    }
+
+    @Test
+    public void createsMissingDirectoriesAndCopiesEmptyFiles() throws Exception {
+        File source = tmp.newFile("empty.war");
+        File dest = new File(tmp.getRoot(), "a/b/empty.war");
+
+        LocalTransfer.transfer(source, dest);
+        assertThat(dest.isFile(), is(true));
+        assertThat(dest.length(), is(0L));
+    }
+
+    @Test
+    public void linksOnSameFileSystemWhenAllowed() throws Exception {
+        File source = tmp.newFile("app.war");
+        FileUtils.writeStringToFile(source, "linked");
+        File dest = new File(tmp.newFolder("deploy"), "app.war");
+
+        LocalTransfer.Method method = LocalTransfer.transfer(source, dest, true);
+        assertThat(FileUtils.readFileToString(dest), is("linked"));
+        assertThat(method == LocalTransfer.Method.LINK || method == LocalTransfer.Method.CHANNEL, is(true));
+    }
+}
@@ -0,0 +1,333 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import com.cloudbees.plugins.deployer.DeployEvent;
+import com.cloudbees.plugins.deployer.exceptions.DeployException;
+import com.cloudbees.plugins.deployer.hosts.DeployHost;
+import com.cloudbees.plugins.deployer.records.DeployedApplicationLocation;
+import com.cloudbees.plugins.deployer.sources.StaticSelectionDeploySource;
+import com.cloudbees.plugins.deployer.targets.DeployTarget;
+import hudson.FilePath;
+import hudson.model.Cause;
+import hudson.remoting.VirtualChannel;
+import org.acegisecurity.Authentication;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link Engine} for tests that "deploys" the archived artifact {@link #ARTIFACT} by sleeping, keeping track of
+ * how many deployments are running at once, of the delta it was asked to deploy when the artifact is a directory and
+ * of the {@link Session}s it opened.
+ */
+public class MockEngine extends Engine<MockEngine.Host, MockEngine.Target> {
+
+    /**
+     * The path of the archived artifact that the targets deploy.
+     */
+    public static final String ARTIFACT = "app.war";
+
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    private static final AtomicInteger MAX_ACTIVE = new AtomicInteger();
+
+    private static final AtomicInteger INVOCATIONS = new AtomicInteger();
+
+    private static final Set<String> THREADS = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private static final List<DirectoryManifest.Delta> DELTAS = new CopyOnWriteArrayList<DirectoryManifest.Delta>();
+
+    private static final List<Session> SESSIONS = new CopyOnWriteArrayList<Session>();
+
+    public MockEngine(EngineConfiguration<Host, Target> config) {
+        super(config);
+    }
+
+    public static void reset() {
+        ACTIVE.set(0);
+        MAX_ACTIVE.set(0);
+        INVOCATIONS.set(0);
+        THREADS.clear();
+        DELTAS.clear();
+        SESSIONS.clear();
+    }
+
+    public static int getMaxActive() {
+        return MAX_ACTIVE.get();
+    }
+
+    public static int getActive() {
+        return ACTIVE.get();
+    }
+
+    public static int getInvocations() {
+        return INVOCATIONS.get();
+    }
+
+    public static Set<String> getThreads() {
+        return THREADS;
+    }
+
+    public static List<DirectoryManifest.Delta> getDeltas() {
+        return DELTAS;
+    }
+
+    public static List<Session> getSessions() {
+        return SESSIONS;
+    }
+
+    @Override
+    public void validate(FilePath applicationFile) throws DeployException {
+    }
+
+    @Override
+    public void validate(File applicationFile) throws DeployException {
+    }
+
+    @Override
+    protected DeploySession openSession() throws DeployException {
+        Session session = new Session();
+        SESSIONS.add(session);
+        return session;
+    }
+
+    @Override
+    protected FilePath.FileCallable<DeployedApplicationLocation> newDeployActor(Target target)
+            throws DeployException {
+        return new Actor(target, (Session) getSession());
+    }
+
+    @Override
+    protected DeployedApplicationLocation getExpectedLocation(Target target) {
+        return new Location(target.getLocation());
+    }
+
+    @Override
+    public DeployEvent createEvent(Target target) {
+        return new DeployEvent(build, Collections.<Cause>emptyList());
+    }
+
+    @Override
+    public void logDetails() {
+        log("Deploying to " + set.getDisplayName());
+    }
+
+    private static class Actor extends DeltaDeployActor<DeployedApplicationLocation> {
+        private final Target target;
+        private final transient Session session;
+
+        Actor(Target target, Session session) {
+            this.target = target;
+            this.session = session;
+        }
+
+        @Override
+        public DeployedApplicationLocation invoke(File f, VirtualChannel channel, DirectoryManifest.Delta delta)
+                throws IOException, InterruptedException {
+            INVOCATIONS.incrementAndGet();
+            if (delta != null) {
+                DELTAS.add(delta);
+            }
+            THREADS.add(Thread.currentThread().getName());
+            int active = ACTIVE.incrementAndGet();
+            session.enter();
+            try {
+                int max;
+                do {
+                    max = MAX_ACTIVE.get();
+                } while (active > max && !MAX_ACTIVE.compareAndSet(max, active));
+                Thread.sleep(target.getSleepMillis());
+                if (target.isFail()) {
+                    throw new IOException("Failed to deploy " + target.getDisplayName());
+                }
+                return new Location(target.getLocation());
+            } finally {
+                session.exit();
+                ACTIVE.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A session that counts how often it is closed and notices being closed while a target is using it.
+     */
+    public static class Session implements DeploySession {
+        private final AtomicInteger users = new AtomicInteger();
+        private final AtomicInteger closes = new AtomicInteger();
+        private volatile boolean closedInUse;
+
+        void enter() {
+            users.incrementAndGet();
+        }
+
+        void exit() {
+            users.decrementAndGet();
+        }
+
+        public void close() {
+            if (users.get() > 0) {
+                closedInUse = true;
+            }
+            closes.incrementAndGet();
+        }
+
+        public int getCloses() {
+            return closes.get();
+        }
+
+        public boolean isClosedInUse() {
+            return closedInUse;
+        }
+    }
+
+    public static class Host extends DeployHost<Host, Target> {
+        private final String resourceKey;
+        private final int resourceLimit;
+
+        public Host(Target... targets) {
+            this(Arrays.asList(targets), 1, null, 1);
+        }
+
+        public Host(List<Target> targets, int targetConcurrency, String resourceKey, int resourceLimit) {
+            super(targets);
+            setTargetConcurrency(targetConcurrency);
+            this.resourceKey = resourceKey;
+            this.resourceLimit = resourceLimit;
+        }
+
+        @Override
+        public String getDeployResourceKey() {
+            return resourceKey;
+        }
+
+        @Override
+        public int getDeployResourceLimit() {
+            return resourceLimit;
+        }
+
+        @Override
+        protected boolean isAuthenticationValid(Authentication authentication) {
+            return true;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "mock host";
+        }
+    }
+
+    public static class Target extends DeployTarget<Target> {
+        private final String name;
+        private final String location;
+        private final long sleepMillis;
+        private final boolean fail;
+
+        public Target(String name, long sleepMillis) {
+            this(name, "mock://" + name, sleepMillis, false);
+        }
+
+        public Target(String name, String location, long sleepMillis, boolean fail) {
+            super(new StaticSelectionDeploySource(ARTIFACT));
+            this.name = name;
+            this.location = location;
+            this.sleepMillis = sleepMillis;
+            this.fail = fail;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public long getSleepMillis() {
+            return sleepMillis;
+        }
+
+        public boolean isFail() {
+            return fail;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+
+        @Override
+        protected boolean isArtifactFileValid(File file) {
+            return true;
+        }
+
+        @Override
+        protected boolean isComplete() {
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Target && name.equals(((Target) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    public static class Location extends DeployedApplicationLocation {
+        public Location(String locationURL) {
+            super(locationURL);
+        }
+
+        @Override
+        public String getImageOf(String size) {
+            return null;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return getLocationURL();
+        }
+
+        @Override
+        public String getDescription() {
+            return null;
+        }
+    }
+
+    public static class Factory extends EngineFactory<Host, Target> {
+        public Factory(Host configuration) {
+            super(configuration);
+        }
+
+        @Override
+        public Engine<Host, Target> build() {
+            return new MockEngine(getConfiguration());
+        }
+
+        /**
+         * Not an extension, so that only the tests that deploy through {@link Engine#create(DeployHost)} register
+         * a {@code @TestExtension} subclass.
+         */
+        public static class DescriptorImpl extends EngineFactoryDescriptor<Host, Target> {
+            @Override
+            public boolean isApplicable(Class<? extends DeployHost> aClass) {
+                return Host.class.isAssignableFrom(aClass);
+            }
+
+            @Override
+            public EngineFactory<Host, Target> newFactory(Host configuration) {
+                return new Factory(configuration);
+            }
+
+            @Override
+            public String getDisplayName() {
+                return "Mock engine";
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import hudson.Util;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class RangedUploadTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void rangeCountAdaptsToLength() {
+        assertThat(RangedUpload.rangeCount(0L, 100L, 8), is(1));
+        assertThat(RangedUpload.rangeCount(99L, 100L, 8), is(1));
+        assertThat(RangedUpload.rangeCount(101L, 100L, 8), is(2));
+        assertThat(RangedUpload.rangeCount(100000L, 100L, 8), is(8));
+    }
+
+    @Test
+    public void reassembledRangesMatchFileAndDigestIsRecorded() throws Exception {
+        byte[] content = new byte[100000];
+        new Random(0).nextBytes(content);
+        File file = tmp.newFile();
+        FileUtils.writeByteArrayToFile(file, content);
+        TransferContext context = new TransferContext(file);
+        final byte[][] received = new byte[5][];
+        final ByteArrayOutputStream reassembled = new ByteArrayOutputStream();
+        RangedUpload upload = new RangedUpload(file, context, 30000L, 8) {
+            @Override
+            protected void uploadRange(Range range, InputStream in) throws IOException {
+                received[range.getIndex()] = IOUtils.toByteArray(in);
+            }
+
+            @Override
+            protected void complete(List<Range> ranges) throws IOException {
+                for (Range range : ranges) {
+                    reassembled.write(received[range.getIndex()]);
+                }
+            }
+        };
+        assertThat(upload.getRanges().size(), is(4));
+        upload.upload();
+        assertThat(Arrays.equals(reassembled.toByteArray(), content), is(true));
+        assertThat(context.getDigest(), is(Util.getDigestOf(file)));
+    }
+
+    @Test
+    public void interruptingOneRangeDoesNotCloseTheOthers() throws Exception {
+        final byte[] content = new byte[100000];
+        new Random(0).nextBytes(content);
+        File file = tmp.newFile();
+        FileUtils.writeByteArrayToFile(file, content);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final byte[][] received = new byte[4][];
+        RangedUpload upload = new RangedUpload(file, null, 30000L, 8) {
+            @Override
+            protected void uploadRange(Range range, InputStream in) throws IOException {
+                if (range.getIndex() == 0) {
+                    Thread.currentThread().interrupt();
+                    try {
+                        in.read(new byte[1024]);
+                    } catch (ClosedByInterruptException e) {
+                        Thread.interrupted();
+                    } finally {
+                        interrupted.countDown();
+                    }
+                    return;
+                }
+                try {
+                    interrupted.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                received[range.getIndex()] = IOUtils.toByteArray(in);
+            }
+
+            @Override
+            protected void complete(List<Range> ranges) throws IOException {
+            }
+        };
+        upload.upload();
+        for (RangedUpload.Range range : upload.getRanges().subList(1, 4)) {
+            int offset = (int) range.getOffset();
+            assertThat(Arrays.equals(received[range.getIndex()],
+                    Arrays.copyOfRange(content, offset, offset + (int) range.getLength())), is(true));
+        }
+    }
+
+    @Test
+    public void failureWaitsForTheRangesInProgress() throws Exception {
+        File file = tmp.newFile();
+        FileUtils.writeByteArrayToFile(file, new byte[100000]);
+        final AtomicInteger active = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(3);
+        RangedUpload upload = new RangedUpload(file, null, 30000L, 8) {
+            @Override
+            protected void uploadRange(Range range, InputStream in) throws IOException {
+                active.incrementAndGet();
+                try {
+                    started.countDown();
+                    if (range.getIndex() == 0) {
+                        try {
+                            started.await();
+                        } catch (InterruptedException e) {
+                            throw new InterruptedIOException();
+                        }
+                        throw new IOException("endpoint refused range 0");
+                    }
+                    // like a blocking socket write, which does not notice the interrupt
+                    long giveUp = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+                    while (System.nanoTime() < giveUp) {
+                        try {
+                            Thread.sleep(10);
+                        } catch (InterruptedException e) {
+                            // keep sending
+                        }
+                    }
+                } finally {
+                    active.decrementAndGet();
+                }
+            }
+
+            @Override
+            protected void complete(List<Range> ranges) throws IOException {
+            }
+        };
+        try {
+            upload.upload();
+            fail("The failure of range 0 should have been rethrown");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("endpoint refused range 0"));
+        }
+        assertThat(active.get(), is(0));
+    }
+}
@@ -0,0 +1,78 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void delayDoublesUpToMaximum() {
+        RetryPolicy policy = new RetryPolicy(10, 100L, 1000L, 0.0);
+        Random random = new Random(0);
+        assertThat(policy.getDelayMillis(1, random), is(100L));
+        assertThat(policy.getDelayMillis(2, random), is(200L));
+        assertThat(policy.getDelayMillis(3, random), is(400L));
+        assertThat(policy.getDelayMillis(4, random), is(800L));
+        assertThat(policy.getDelayMillis(5, random), is(1000L));
+        assertThat(policy.getDelayMillis(50, random), is(1000L));
+    }
+
+    @Test
+    public void jitterOnlyShortensDelay() {
+        RetryPolicy policy = new RetryPolicy(10, 1000L, 1000L, 0.5);
+        Random random = new Random(0);
+        for (int i = 0; i < 100; i++) {
+            assertThat(policy.getDelayMillis(1, random), allOf(greaterThanOrEqualTo(500L), lessThanOrEqualTo(1000L)));
+        }
+    }
+
+    @Test
+    public void retriesMatchingCauseUntilAttemptsExhausted() {
+        RetryPolicy policy = new RetryPolicy(3, 0L, 0L, 0.0);
+        Throwable failure = new RuntimeException(new IOException("connection reset"));
+        assertThat(policy.shouldRetry(1, failure), is(true));
+        assertThat(policy.shouldRetry(2, failure), is(true));
+        assertThat(policy.shouldRetry(3, failure), is(false));
+    }
+
+    @Test
+    public void doesNotRetryUnmatchedOrInterrupted() {
+        RetryPolicy policy = new RetryPolicy(3, 0L, 0L, 0.0);
+        assertThat(policy.shouldRetry(1, new IllegalStateException()), is(false));
+        assertThat(policy.shouldRetry(1, new IOException(new InterruptedException())), is(false));
+        assertThat(policy.withRetryOn(IllegalStateException.class).shouldRetry(1, new IllegalStateException()),
+                is(true));
+        assertThat(RetryPolicy.NONE.shouldRetry(1, new IOException()), is(false));
+    }
+
+    @Test
+    public void doesNotRetryInterruptedIo() {
+        RetryPolicy policy = new RetryPolicy(3, 0L, 0L, 0.0);
+        assertThat(policy.shouldRetry(1, new InterruptedIOException()), is(false));
+        assertThat(policy.shouldRetry(1, new IOException(new ClosedByInterruptException())), is(false));
+        assertThat(policy.shouldRetry(1, new ClosedByInterruptException()), is(false));
+        assertThat(policy.shouldRetry(1, new SocketTimeoutException("read timed out")), is(true));
+    }
+
+    @Test
+    public void doesNotRetryOnInterruptedThread() {
+        RetryPolicy policy = new RetryPolicy(3, 0L, 0L, 0.0);
+        Thread.currentThread().interrupt();
+        try {
+            assertThat(policy.shouldRetry(1, new IOException("connection reset")), is(false));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
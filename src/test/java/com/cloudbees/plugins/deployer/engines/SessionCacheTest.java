@@ -0,0 +1,106 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import com.cloudbees.plugins.deployer.exceptions.DeployException;
+import hudson.security.ACL;
+import org.acegisecurity.Authentication;
+import org.acegisecurity.providers.UsernamePasswordAuthenticationToken;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class SessionCacheTest {
+
+    private static final List<Authentication> SYSTEM = Collections.singletonList(ACL.SYSTEM);
+
+    @Test
+    public void reusesLiveSession() throws Exception {
+        SessionCache cache = new SessionCache(10, 60000L);
+        SessionCache.Key key = new SessionCache.Key(Engine.class, "host", SYSTEM);
+        CountingOpener opener = new CountingOpener();
+        DeploySession first = cache.acquire(key, opener);
+        cache.release(first);
+        DeploySession second = cache.acquire(key, opener);
+        assertThat(second, sameInstance(first));
+        assertThat(opener.opened, is(1));
+        assertThat(((TestSession) first).closed, is(false));
+    }
+
+    @Test
+    public void expiredSessionIsReopened() throws Exception {
+        SessionCache cache = new SessionCache(10, 0L);
+        SessionCache.Key key = new SessionCache.Key(Engine.class, "host", SYSTEM);
+        CountingOpener opener = new CountingOpener();
+        DeploySession first = cache.acquire(key, opener);
+        cache.release(first);
+        DeploySession second = cache.acquire(key, opener);
+        assertThat(second, not(sameInstance(first)));
+        assertThat(((TestSession) first).closed, is(true));
+    }
+
+    @Test
+    public void invalidatedSessionIsClosedOnceReleased() throws Exception {
+        SessionCache cache = new SessionCache(10, 60000L);
+        SessionCache.Key key = new SessionCache.Key(Engine.class, "host", SYSTEM);
+        DeploySession session = cache.acquire(key, new CountingOpener());
+        cache.invalidateAll();
+        assertThat(cache.size(), is(0));
+        assertThat(((TestSession) session).closed, is(false));
+        cache.release(session);
+        assertThat(((TestSession) session).closed, is(true));
+    }
+
+    @Test
+    public void expiredSessionIsSweptWithoutBeingAcquiredAgain() throws Exception {
+        SessionCache cache = new SessionCache(10, 100L);
+        SessionCache.Key key = new SessionCache.Key(Engine.class, "host", SYSTEM);
+        TestSession session = (TestSession) cache.acquire(key, new CountingOpener());
+        cache.release(session);
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!session.closed && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+        assertThat(session.closed, is(true));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void invalidatingAnAuthenticationKeepsOtherSessions() throws Exception {
+        SessionCache cache = new SessionCache(10, 60000L);
+        SessionCache.Key system = new SessionCache.Key(Engine.class, "host", SYSTEM);
+        SessionCache.Key alice = new SessionCache.Key(Engine.class, "host",
+                Collections.<Authentication>singletonList(new UsernamePasswordAuthenticationToken("alice", "")));
+        TestSession systemSession = (TestSession) cache.acquire(system, new CountingOpener());
+        TestSession aliceSession = (TestSession) cache.acquire(alice, new CountingOpener());
+        cache.release(systemSession);
+        cache.release(aliceSession);
+        cache.invalidate("alice");
+        assertThat(cache.size(), is(1));
+        assertThat(aliceSession.closed, is(true));
+        assertThat(systemSession.closed, is(false));
+    }
+
+    private static class CountingOpener implements SessionCache.Opener {
+        private int opened;
+
+        public DeploySession open() throws DeployException {
+            opened++;
+            return new TestSession();
+        }
+    }
+
+    private static class TestSession implements DeploySession {
+        private volatile boolean closed;
+
+        public void close() throws IOException {
+            closed = true;
+        }
+    }
+}
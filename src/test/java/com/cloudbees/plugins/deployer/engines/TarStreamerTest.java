@@ -0,0 +1,33 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import hudson.FilePath;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class TarStreamerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void compressedArchiveRoundTrips() throws Exception {
+        File dir = tmp.newFolder();
+        FileUtils.writeStringToFile(new File(dir, "index.html"), "index");
+        FileUtils.writeStringToFile(new File(dir, "css/site.css"), "css");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(TarStreamer.write(dir, out, true), is(2));
+        File dest = tmp.newFolder();
+        new FilePath(dest).untarFrom(new ByteArrayInputStream(out.toByteArray()), FilePath.TarCompression.GZIP);
+        assertThat(FileUtils.readFileToString(new File(dest, "index.html")), is("index"));
+        assertThat(FileUtils.readFileToString(new File(dest, "css/site.css")), is("css"));
+    }
+}
@@ -0,0 +1,144 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class TransferCodecTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void negotiatesMostPreferredAcceptedCodec() {
+        assertThat(TransferCodec.negotiate(Arrays.asList("deflate", "GZIP"), TransferCodec.all()),
+                is(TransferCodec.GZIP));
+        assertThat(TransferCodec.negotiate(Arrays.asList(" deflate"), TransferCodec.all()),
+                is(TransferCodec.DEFLATE));
+        assertThat(TransferCodec.negotiate(Arrays.asList("br"), TransferCodec.all()), is(TransferCodec.IDENTITY));
+    }
+
+    @Test
+    public void compressesTextAndSkipsRandomContent() throws Exception {
+        File text = tmp.newFile();
+        FileUtils.writeStringToFile(text, repeat("<html><body>hello</body></html>\n", 4096));
+        File random = tmp.newFile();
+        byte[] noise = new byte[128 * 1024];
+        new Random(42).nextBytes(noise);
+        FileUtils.writeByteArrayToFile(random, noise);
+
+        assertThat(new TransferContext(text).negotiateCodec(Arrays.asList("gzip")), is(TransferCodec.GZIP));
+        assertThat(new TransferContext(random).negotiateCodec(Arrays.asList("gzip")), is(TransferCodec.IDENTITY));
+    }
+
+    @Test
+    public void transferRecordsStatsAndDigestAndRoundTrips() throws Exception {
+        String content = repeat("some highly repetitive content ", 10000);
+        File file = tmp.newFile();
+        FileUtils.writeStringToFile(file, content);
+        for (TransferCodec codec : TransferCodec.all()) {
+            TransferContext context = new TransferContext(file);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CompressionStats stats = context.transferTo(out, codec);
+            assertThat(stats.getCodec(), is(codec.getName()));
+            assertThat(stats.getRawBytes(), is(file.length()));
+            assertThat(stats.getWireBytes(), is((long) out.size()));
+            assertThat(context.getCompressionStats(), is(stats));
+            assertThat(context.getDigest(), notNullValue());
+            if (!codec.isIdentity()) {
+                assertThat(stats.getRatio(), lessThan(0.1));
+            }
+            assertThat(IOUtils.toString(codec.decompress(new ByteArrayInputStream(out.toByteArray()))), is(content));
+        }
+    }
+
+    @Test
+    public void judgesWarsByTheirStoredEntries() throws Exception {
+        byte[] page = repeat("<html><body>hello</body></html>\n", 4096).getBytes("UTF-8");
+        byte[] jar = new byte[2 * 1024 * 1024];
+        new Random(42).nextBytes(jar);
+
+        File storedPages = tmp.newFile("stored-pages.war");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(storedPages));
+        try {
+            put(zip, "WEB-INF/web.xml", page, ZipEntry.DEFLATED);
+            put(zip, "index.html", page, ZipEntry.STORED);
+            put(zip, "about.html", page, ZipEntry.STORED);
+        } finally {
+            zip.close();
+        }
+        File storedJar = tmp.newFile("stored-jar.war");
+        zip = new ZipOutputStream(new FileOutputStream(storedJar));
+        try {
+            // a compressible entry first, which sampling only the start of the archive would see
+            put(zip, "index.html", page, ZipEntry.STORED);
+            put(zip, "WEB-INF/lib/library.jar", jar, ZipEntry.STORED);
+        } finally {
+            zip.close();
+        }
+        File deflated = tmp.newFile("deflated.war");
+        zip = new ZipOutputStream(new FileOutputStream(deflated));
+        try {
+            put(zip, "index.html", page, ZipEntry.DEFLATED);
+            put(zip, "about.html", page, ZipEntry.DEFLATED);
+        } finally {
+            zip.close();
+        }
+
+        assertThat(TransferCodec.isCompressible(storedPages), is(true));
+        assertThat(TransferCodec.isCompressible(storedJar), is(false));
+        assertThat(TransferCodec.isCompressible(deflated), is(false));
+    }
+
+    @Test
+    public void samplesBeyondACompressibleHeader() throws Exception {
+        byte[] header = repeat("# header line\n", 8192).getBytes("UTF-8");
+        byte[] noise = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(noise);
+        File file = tmp.newFile();
+        FileUtils.writeByteArrayToFile(file, header);
+        FileUtils.writeByteArrayToFile(file, noise, true);
+
+        assertThat(TransferCodec.isCompressible(file), is(false));
+    }
+
+    private static void put(ZipOutputStream zip, String name, byte[] content, int method) throws Exception {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder b = new StringBuilder(s.length() * times);
+        for (int i = 0; i < times; i++) {
+            b.append(s);
+        }
+        return b.toString();
+    }
+}
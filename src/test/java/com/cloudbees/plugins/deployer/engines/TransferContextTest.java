@@ -0,0 +1,105 @@
+package com.cloudbees.plugins.deployer.engines;
+
+import hudson.Util;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TransferContextTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File createFile(int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        File file = tmp.newFile();
+        FileUtils.writeByteArrayToFile(file, content);
+        return file;
+    }
+
+    @Test
+    public void streamReadToEndRecordsDigest() throws Exception {
+        File file = createFile(100000);
+        TransferContext context = new TransferContext(file);
+        InputStream in = context.openInputStream();
+        try {
+            IOUtils.copy(in, new NullOutputStream());
+        } finally {
+            in.close();
+        }
+        assertThat(context.getDigest(), is(Util.getDigestOf(file)));
+    }
+
+    @Test
+    public void channelReadToEndRecordsDigest() throws Exception {
+        File file = createFile(100000);
+        TransferContext context = new TransferContext(file);
+        ReadableByteChannel channel = context.openChannel();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            while (channel.read(buffer) != -1) {
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        assertThat(context.getDigest(), is(Util.getDigestOf(file)));
+    }
+
+    @Test
+    public void readingPastEndKeepsDigest() throws Exception {
+        File file = createFile(100000);
+        TransferContext context = new TransferContext(file);
+        InputStream in = context.openInputStream();
+        try {
+            IOUtils.copy(in, new NullOutputStream());
+            assertThat(in.read(), is(-1));
+            assertThat(in.read(new byte[10], 0, 10), is(-1));
+            assertThat(in.skip(10), is(0L));
+        } finally {
+            in.close();
+        }
+        assertThat(context.getDigest(), is(Util.getDigestOf(file)));
+
+        context = new TransferContext(file);
+        ReadableByteChannel channel = context.openChannel();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            while (channel.read(buffer) != -1) {
+                buffer.clear();
+            }
+            assertThat(channel.read(buffer), is(-1));
+            assertThat(channel.read(buffer), is(-1));
+        } finally {
+            channel.close();
+        }
+        assertThat(context.getDigest(), is(Util.getDigestOf(file)));
+    }
+
+    @Test
+    public void partialReadDoesNotRecordDigest() throws Exception {
+        File file = createFile(100000);
+        TransferContext context = new TransferContext(file);
+        InputStream in = context.openInputStream();
+        try {
+            in.read(new byte[1000]);
+        } finally {
+            in.close();
+        }
+        assertThat(context.getDigest(), nullValue());
+    }
+}
@@ -0,0 +1,75 @@
+package com.cloudbees.plugins.deployer.records;
+
+import com.cloudbees.plugins.deployer.engines.MockEngine;
+import com.cloudbees.plugins.deployer.sources.DeploySourceOrigin;
+import hudson.Util;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.StreamBuildListener;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.model.Statement;
+import org.jvnet.hudson.test.RestartableJenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class DeployedApplicationHistoryTest {
+
+    @Rule
+    public RestartableJenkinsRule rr = new RestartableJenkinsRule();
+
+    private void deploy(FreeStyleBuild build, ByteArrayOutputStream log) throws Throwable {
+        StreamBuildListener listener = new StreamBuildListener(log, Charset.defaultCharset());
+        new MockEngine.Factory(new MockEngine.Host(new MockEngine.Target("restart", 0)))
+                .from(build, DeploySourceOrigin.RUN)
+                .withLauncher(rr.j.jenkins.createLauncher(listener))
+                .withListener(listener)
+                .withSkipUnchanged(true)
+                .build().perform();
+    }
+
+    @Test
+    public void skipsArtifactDeployedBeforeRestart() {
+        final AtomicReference<DeployedApplicationHistory> before = new AtomicReference<DeployedApplicationHistory>();
+        rr.addStep(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                MockEngine.reset();
+                FreeStyleProject project = rr.j.createFreeStyleProject("p");
+                FreeStyleBuild build = rr.j.buildAndAssertSuccess(project);
+                File artifact = new File(build.getArtifactsDir(), MockEngine.ARTIFACT);
+                FileUtils.writeStringToFile(artifact, "application");
+                rr.j.jenkins.getFingerprintMap().getOrCreate(build, MockEngine.ARTIFACT, Util.getDigestOf(artifact));
+
+                deploy(build, new ByteArrayOutputStream());
+
+                assertThat(MockEngine.getInvocations(), is(1));
+                before.set(DeployedApplicationHistory.get());
+            }
+        });
+        rr.addStep(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                FreeStyleBuild build = rr.j.jenkins.getItemByFullName("p", FreeStyleProject.class).getLastBuild();
+                ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+                deploy(build, log);
+
+                // the history was read again from disk rather than carried over from the previous instance
+                assertThat(DeployedApplicationHistory.get(), not(sameInstance(before.get())));
+                assertThat(MockEngine.getInvocations(), is(1));
+                assertThat(log.toString(), containsString("Skipping deployment as "));
+            }
+        });
+    }
+}
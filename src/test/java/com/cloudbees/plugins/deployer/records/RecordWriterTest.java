@@ -0,0 +1,62 @@
+package com.cloudbees.plugins.deployer.records;
+
+import hudson.model.Saveable;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class RecordWriterTest {
+
+    @Test
+    public void keepsSavingAfterShutdown() throws Exception {
+        CountingSaveable first = new CountingSaveable();
+        RecordWriter.get().save(first);
+        RecordWriter.flushOnShutdown();
+        assertThat(first.saved.getCount(), is(0L));
+
+        // e.g. the next JenkinsRule in the same JVM
+        CountingSaveable second = new CountingSaveable();
+        RecordWriter.get().save(second);
+        assertThat(second.saved.await(10, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void coalescesSavesOfTheSameRecord() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        // keep the writer thread busy so that the next saves queue up behind it
+        RecordWriter.get().save(new Saveable() {
+            public void save() throws IOException {
+                blocked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        });
+        assertThat(blocked.await(10, TimeUnit.SECONDS), is(true));
+        CountingSaveable record = new CountingSaveable();
+        RecordWriter.get().save(record);
+        RecordWriter.get().save(record);
+        RecordWriter.get().save(record);
+        release.countDown();
+        assertThat(RecordWriter.get().awaitIdle(10, TimeUnit.SECONDS), is(true));
+        assertThat(record.count, is(1));
+    }
+
+    private static class CountingSaveable implements Saveable {
+        private final CountDownLatch saved = new CountDownLatch(1);
+        private volatile int count;
+
+        public void save() throws IOException {
+            count++;
+            saved.countDown();
+        }
+    }
+}